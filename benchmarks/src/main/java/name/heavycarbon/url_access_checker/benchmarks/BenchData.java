@@ -0,0 +1,50 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.MethodName;
+import name.heavycarbon.url_access_checker.building.Options;
+import name.heavycarbon.url_access_checker.building.Scheme;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.util.List;
+
+// ---
+// Test data shared by the benchmarks.
+// ---
+
+abstract class BenchData {
+
+    static final List<String> bodyStrings = List.of("Last modified", "Parent Directory", "Apache Server at");
+
+    static @NotNull URI uri(int i) {
+        return URI.create("https://localhost/wikis/personal/page_" + i + ".html");
+    }
+
+    static @NotNull TestConfig testConfig(int i, @NotNull Options options) {
+        final var epData = new TestConfig.EndpointData(new MachineName("localhost"), Scheme.https, "/wikis/personal/page_" + i + ".html");
+        final var credData = new TestConfig.CredData(null, TestConfig.WhatCreds.none);
+        return new TestConfig(epData, credData, new MethodName("Bench:page_" + i), HttpStatusCode.ok, options);
+    }
+
+    // ---
+    // A directory listing as served by Apache, about "size" chars long, with the
+    // body strings spread out over it (the last one at the very end).
+    // ---
+
+    static @NotNull String directoryListing(int size) {
+        final var buf = new StringBuilder(size + 200);
+        buf.append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 3.2 Final//EN\">\n<html><head><title>Index of /stuff</title></head><body>\n");
+        buf.append("<table><tr><th>Name</th><th>Last modified</th><th>Size</th></tr>\n");
+        buf.append("<tr><td><a href=\"/\">Parent Directory</a></td><td>&nbsp;</td><td>-</td></tr>\n");
+        int i = 0;
+        while (buf.length() < size) {
+            buf.append("<tr><td><a href=\"file_").append(i).append(".txt\">file_").append(i).append(".txt</a></td><td>2024-06-01 12:00</td><td>").append(i * 37 % 9999).append("</td></tr>\n");
+            i++;
+        }
+        buf.append("</table><address>Apache Server at localhost Port 443</address></body></html>\n");
+        return buf.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.building.Options;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.HttpResultInnerSuccess;
+import name.heavycarbon.url_access_checker.http.HttpResultOuter;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+// ---
+// Checking a response whose body has been received in full (i.e. not scanned
+// while streaming in) for the body strings, for bodies of realistic sizes.
+// ---
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckHttpResponseBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    private URI uri;
+    private TestConfig testConfig;
+    private HttpResultInnerSuccess inner;
+
+    @Setup
+    public void setup() {
+        uri = BenchData.uri(0);
+        testConfig = BenchData.testConfig(0, new Options().withBodyStrings(BenchData.bodyStrings));
+        inner = new HttpResultInnerSuccess(HttpStatusCode.ok, new FakeHttpResponse(200, uri, BenchData.directoryListing(bodySize)));
+    }
+
+    @Benchmark
+    public HttpResultOuter checkHttpResponse() {
+        return inner.checkHttpResponse(uri, testConfig);
+    }
+}
@@ -0,0 +1,76 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// ---
+// An HttpResponse that never went over the network, for feeding the checking and
+// printing code.
+// ---
+
+class FakeHttpResponse implements HttpResponse<String> {
+
+    private final int statusCode;
+    private final @NotNull URI uri;
+    private final @NotNull String body;
+    private final @NotNull HttpHeaders headers;
+
+    FakeHttpResponse(int statusCode, @NotNull URI uri, @NotNull String body) {
+        this.statusCode = statusCode;
+        this.uri = uri;
+        this.body = body;
+        this.headers = HttpHeaders.of(Map.of(
+                "content-type", List.of("text/html; charset=UTF-8"),
+                "content-length", List.of(String.valueOf(body.length())),
+                "server", List.of("Apache")), (name, value) -> true);
+    }
+
+    @Override
+    public int statusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return HttpRequest.newBuilder(uri).build();
+    }
+
+    @Override
+    public Optional<HttpResponse<String>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return uri;
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+    }
+}
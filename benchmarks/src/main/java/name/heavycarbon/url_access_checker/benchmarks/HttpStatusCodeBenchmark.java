@@ -0,0 +1,40 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// ---
+// Looking up HttpStatusCode instances, with several threads doing it at the same time
+// as happens with the parallel runners.
+// ---
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Thread)
+public class HttpStatusCodeBenchmark {
+
+    private static final int[] codes = {200, 301, 302, 401, 403, 404, 500, 503, 299, 999};
+    private static final String[] texts = {"OK", "Moved Permanently", "Unauthorized", "Forbidden", "Not Found", "Internal Server Error", "no such status"};
+
+    private int codeIndex = 0;
+    private int textIndex = 0;
+
+    @Benchmark
+    public HttpStatusCode fromCode() {
+        codeIndex = (codeIndex + 1) % codes.length;
+        return HttpStatusCode.fromCode(codes[codeIndex]);
+    }
+
+    @Benchmark
+    public Optional<HttpStatusCode> fromText() {
+        textIndex = (textIndex + 1) % texts.length;
+        return HttpStatusCode.fromText(texts[textIndex]);
+    }
+}
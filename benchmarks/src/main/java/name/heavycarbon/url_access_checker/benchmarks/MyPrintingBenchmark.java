@@ -0,0 +1,48 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// ---
+// The string helpers that all the printing goes through.
+// ---
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MyPrintingBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int lineCount;
+
+    private String text;
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        lines = new String[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            lines[i] = "Line " + i + " : some value that is printed, about as long as a header";
+        }
+        text = String.join("\n", lines);
+    }
+
+    @Benchmark
+    public String indent() {
+        return MyPrinting.indent(text);
+    }
+
+    @Benchmark
+    public String joinIfNotEmpty() {
+        final var buf = new StringBuilder();
+        for (String line : lines) {
+            MyPrinting.joinIfNotEmpty(buf, line);
+        }
+        return MyPrinting.makeString(buf);
+    }
+}
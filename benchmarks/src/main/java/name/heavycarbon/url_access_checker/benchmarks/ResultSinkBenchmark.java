@@ -0,0 +1,71 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.building.Options;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.*;
+import name.heavycarbon.url_access_checker.running.ConsoleSink;
+import name.heavycarbon.url_access_checker.running.ResultSink;
+import name.heavycarbon.url_access_checker.running.TestResult;
+import name.heavycarbon.url_access_checker.running.TestSuiteResults;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+// ---
+// Handing the results of large test suites to a ResultSink, as the runners do,
+// with a sink that renders each result the way the ConsoleSink does, but into
+// a Blackhole instead of STDOUT. One result in a hundred is a mismatch (a wrong
+// status code, which prints the response headers).
+//
+// Nothing grows with the number of results: the TestSuiteResults are of a fixed
+// size and the rendered text is never held all at once.
+// ---
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultSinkBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int resultCount;
+
+    @Param({"false", "true"})
+    public boolean printMatches;
+
+    private TestResult[] testResults;
+
+    @Setup
+    public void setup() {
+        final var options = new Options();
+        testResults = new TestResult[resultCount];
+        for (int i = 0; i < resultCount; i++) {
+            final URI uri = BenchData.uri(i);
+            final TestConfig testConfig = BenchData.testConfig(i, options);
+            final boolean mismatch = (i % 100 == 99);
+            final var status = mismatch ? HttpStatusCode.forbidden : HttpStatusCode.ok;
+            final var inner = new HttpResultInnerSuccess(status, new FakeHttpResponse(mismatch ? 403 : 200, uri, "<html>...</html>"));
+            final HttpResultOuter outer = inner.checkHttpResponse(uri, testConfig);
+            testResults[i] = new TestResult(uri, testConfig, outer, outer.getMsg(), new PhaseTimings());
+        }
+    }
+
+    @Benchmark
+    public TestSuiteResults emit(Blackhole blackhole) {
+        final ResultSink sink = testResult -> {
+            if (printMatches || !testResult.isMatch()) {
+                blackhole.consume(ConsoleSink.render(testResult));
+            }
+        };
+        final TestSuiteResults results = new TestSuiteResults();
+        for (TestResult testResult : testResults) {
+            sink.accept(testResult);
+            results.add(testResult);
+        }
+        return results;
+    }
+}
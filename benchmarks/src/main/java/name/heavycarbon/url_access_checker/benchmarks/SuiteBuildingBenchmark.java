@@ -0,0 +1,44 @@
+package name.heavycarbon.url_access_checker.benchmarks;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.building.TestSuiteBuilder_Insider;
+import name.heavycarbon.url_access_checker.building.TestSuiteBuilder_Local;
+import name.heavycarbon.url_access_checker.building.TestSuiteBuilder_Outsider;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ---
+// Building the test suites, as done once at startup.
+// ---
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuiteBuildingBenchmark {
+
+    private final MachineName machine = new MachineName("localhost");
+    private final Credentials toolsCreds = new Credentials("tools_user", "tools_pass");
+    private final Credentials wikiCreds = new Credentials("wiki_user", "wiki_pass");
+
+    @Benchmark
+    public List<TestConfig> buildInsider() {
+        return new TestSuiteBuilder_Insider(machine, toolsCreds, wikiCreds).build();
+    }
+
+    @Benchmark
+    public List<TestConfig> buildOutsider() {
+        return new TestSuiteBuilder_Outsider(machine, toolsCreds, wikiCreds).build();
+    }
+
+    @Benchmark
+    public List<TestConfig> buildLocal() {
+        return new TestSuiteBuilder_Local(machine, toolsCreds, wikiCreds).build();
+    }
+}
@@ -28,9 +28,22 @@ MACHINE=$2 # the host to test
 CREDDIR="$HOME/creds"
 UBERJAR="$HOME/url_access_checker-1.0.jar"
 
+# An AppCDS archive of the classes the program loads makes it start faster. It is only
+# valid for the very jar file it was recorded with, so record it after copying the jar:
+#
+# java -XX:ArchiveClassesAtExit="$HOME/url_access_checker-1.0.jsa" -jar "$UBERJAR" --training-run
+#
+# If the archive is missing or does not fit, the JVM just starts as usual.
+
+UBERJSA="$HOME/url_access_checker-1.0.jsa"
+CDS=""
+if [[ -f "$UBERJSA" ]]; then
+   CDS="-XX:SharedArchiveFile=$UBERJSA"
+fi
+
 # here we go; note that we switch on Java assertions with "-ea"
 
-java -ea \
+java -ea $CDS \
         -jar "$UBERJAR" \
         --machine=$MACHINE \
         --scenario=$SCENARIO \
@@ -4,7 +4,10 @@ import org.jetbrains.annotations.NotNull;
 
 // ---
 // Just a wrapped string with a specific type for easier coding, as one can tell the compiler
-// or linter more than just "this is a string"
+// or linter more than just "this is a string".
+// The machine may be given as "host:port" to reach a server on a non-standard port (e.g. the
+// stub server used for benchmarking). An IPv6 address (which contains several colons) is
+// taken to have no port.
 // ---
 
 public class MachineName {
@@ -12,19 +15,49 @@ public class MachineName {
     @NotNull
     private final String name;
 
+    private final int port; // -1 if none given, i.e. the default port of the scheme
+
     public MachineName(String x) {
         if (x == null) {
             throw new IllegalArgumentException("The passed 'machine name' is (null))");
         }
-        this.name = x.trim().toLowerCase();
+        final String trimmed = x.trim().toLowerCase();
+        final int colon = trimmed.lastIndexOf(':');
+        if (colon >= 0 && trimmed.indexOf(':') == colon) {
+            this.name = trimmed.substring(0, colon);
+            this.port = parsePort(trimmed.substring(colon + 1));
+        } else {
+            this.name = trimmed;
+            this.port = -1;
+        }
         if (this.name.isEmpty()) {
             throw new IllegalArgumentException("The passed 'machine name' is empty after trimming");
         }
     }
 
+    private static int parsePort(@NotNull String x) {
+        try {
+            final int port = Integer.parseInt(x);
+            if (port < 1 || port > 65535) {
+                throw new IllegalArgumentException("The port of the passed 'machine name' is out of range [1,65535]: " + port);
+            }
+            return port;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The port of the passed 'machine name' is not a number: '" + x + "'");
+        }
+    }
+
+    public @NotNull String getHost() {
+        return name;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return name.hashCode() * 31 + port;
     }
 
     @Override
@@ -32,12 +65,12 @@ public class MachineName {
         if (this == obj) {
             return true;
         } else {
-            return obj instanceof MachineName && this.name.equals(((MachineName) obj).name);
+            return obj instanceof MachineName && this.name.equals(((MachineName) obj).name) && this.port == ((MachineName) obj).port;
         }
     }
 
     @Override
     public String toString() {
-        return name;
+        return (port < 0) ? name : name + ":" + port;
     }
 }
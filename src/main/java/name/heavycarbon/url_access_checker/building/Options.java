@@ -2,6 +2,7 @@ package name.heavycarbon.url_access_checker.building;
 
 import name.heavycarbon.url_access_checker.credentials.Credentials;
 import name.heavycarbon.url_access_checker.http.AlsoAdd;
+import name.heavycarbon.url_access_checker.http.BodyMatcher;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -14,6 +15,7 @@ import java.util.List;
 public class Options {
 
     private final @Nullable List<String> bodyStrings; // strings to look for in body, generally null
+    private final @Nullable BodyMatcher bodyMatcher; // built from "bodyStrings" once, null if there are none
     private final @Nullable Credentials goodCreds; // credentials that will be used for "good access"; may be null
     private final @Nullable Credentials badCreds; // credentials that will be used for "bad access"; may be null
     private final boolean isrIsPossible; // "internal server error is possible" if the access works but the application is down
@@ -22,6 +24,7 @@ public class Options {
     public Options() {
         alsoAdd = AlsoAdd.nothing;
         bodyStrings = null;
+        bodyMatcher = null;
         goodCreds = null;
         badCreds = null;
         isrIsPossible = false;
@@ -37,6 +40,7 @@ public class Options {
                     boolean isrIsPossible) {
         this.alsoAdd = alsoAdd;
         this.bodyStrings = bodyStrings;
+        this.bodyMatcher = (bodyStrings != null && !bodyStrings.isEmpty()) ? new BodyMatcher(bodyStrings) : null;
         this.goodCreds = goodCreds;
         this.badCreds = badCreds;
         this.isrIsPossible = isrIsPossible;
@@ -87,6 +91,12 @@ public class Options {
         return bodyStrings;
     }
 
+    // the same instance for all the tests using these Options
+
+    public @Nullable BodyMatcher getBodyMatcher() {
+        return bodyMatcher;
+    }
+
     public @Nullable Credentials getGoodCreds() {
         return goodCreds;
     }
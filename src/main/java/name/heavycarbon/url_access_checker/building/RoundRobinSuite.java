@@ -0,0 +1,60 @@
+package name.heavycarbon.url_access_checker.building;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+// ---
+// A test suite made of several test suites, typically the same suite for several
+// machines, taking one TestConfig from each in turn:
+//
+// > a1 b1 c1 a2 b2 c2 a3 c3 a4 c4 ...
+//
+// A suite that has run out is skipped. The suites are read lazily, one TestConfig
+// at a time, so that the runners' HostScheduler sees the tests of all the machines
+// at the front of the suite, and a sequential run goes from machine to machine
+// instead of finishing one machine before starting the next.
+// ---
+
+public class RoundRobinSuite implements Iterable<TestConfig> {
+
+    private final @NotNull List<Iterable<TestConfig>> suites;
+
+    public RoundRobinSuite(@NotNull List<? extends Iterable<TestConfig>> suites) {
+        this.suites = List.copyOf(suites);
+    }
+
+    @Override
+    public @NotNull Iterator<TestConfig> iterator() {
+        final List<Iterator<TestConfig>> iterators = new ArrayList<>(suites.size());
+        for (Iterable<TestConfig> suite : suites) {
+            iterators.add(suite.iterator());
+        }
+        return new Iterator<>() {
+
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (!iterators.isEmpty()) {
+                    if (cursor >= iterators.size()) {
+                        cursor = 0;
+                    }
+                    if (iterators.get(cursor).hasNext()) {
+                        return true;
+                    }
+                    iterators.remove(cursor);
+                }
+                return false;
+            }
+
+            @Override
+            public TestConfig next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterators.get(cursor++).next();
+            }
+        };
+    }
+}
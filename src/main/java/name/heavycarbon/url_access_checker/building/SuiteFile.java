@@ -0,0 +1,516 @@
+package name.heavycarbon.url_access_checker.building;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import name.heavycarbon.url_access_checker.http.AlsoAdd;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.LoaderOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/*
+
+ A test suite read from a YAML or JSON file (chosen by the extension: ".yaml", ".yml"
+ or ".json") instead of being built by one of the TestSuiteBuilder classes.
+
+ > name: TestSuiteBuilder_Insider            # optional, the file name without extension by default
+ > defaults:                                 # optional, options for all the groups
+ >   badCreds: {user: foo, pass: bar}
+ > groups:
+ >   - name: buildTestSuite_Tools            # method names are "<suite name>:<group name>/<pattern>/<creds>"
+ >     goodCreds: tools                      # options for all the tests of the group
+ >     tests:
+ >       - pattern: urlIsMoved_OnlyWithGoodCredentials
+ >         path: /tools
+ >       - pattern: urlIsAccessible_OnlyWithGoodCredentials
+ >         paths: [/tools/, /tools/server-status, /tools/server-info]
+ >       - pattern: urlIsMissing_WithGoodCredentialsOnly
+ >         isrPossible: true                 # options for this test only
+ >         goodBodyStrings: [You are trying to access an attachment that does not exist]
+ >         path: /wikis/personal/pub/this_is_missing.html
+
+ A "pattern" is the name of one of the methods of TestSuiteBuilderMethods, which
+ turns a path into the TestConfigs for all the credentials. The options, which
+ can be given at all three levels, the innermost winning, are:
+
+ - goodCreds, badCreds: either "tools" or "wiki", for the credentials given on the
+   command line, or literal credentials {user: ..., pass: ...}
+ - isrPossible: true or false (an "Internal Server Error" is an acceptable answer)
+ - bodyStrings: a list of strings the body must contain; "${machine}" is replaced
+   by the machine name
+ - alsoAdd: nothing, httpResponse or httpResponseAndBody
+ - scheme: http or https (https by default)
+
+ "goodBodyStrings" is needed by "urlIsMissing_WithGoodCredentialsOnly" only.
+
+ The file is read with a streaming parser, one path at a time, as the runner asks for
+ more TestConfigs: a suite of any size starts running at once and is never held in
+ memory as a whole. For this to work, "groups" must be the last entry of the suite,
+ "tests" the last entry of a group and "paths" the last entry of a test. A problem
+ with the file is only found once the reader gets there; it is thrown from the
+ iterator as a SuiteFileException that gives the place in the file. Failing to read
+ the file is an UncheckedIOException.
+
+ Each call to iterator() reads the file anew. The file is closed once the iterator
+ reaches the end of the suite or throws.
+ */
+
+public class SuiteFile implements Iterable<TestConfig> {
+
+    // ---
+    // The methods of TestSuiteBuilderMethods that can be used in a suite file
+    // ---
+
+    public enum Pattern {
+        urlIsForbidden_WithAnyCredentials,
+        urlIsUnauthorizedOrForbidden_WithAnyCredentials,
+        urlIsAccessible_OnlyWithGoodCredentials,
+        urlIsAccessible_WithoutCredentials,
+        urlIsMissing_WithAnyCredentials,
+        urlIsMissing_WithGoodCredentialsOnly,
+        urlIsMoved_WithAnyCredentials,
+        urlIsMoved_OnlyWithGoodCredentials;
+
+        @NotNull List<TestConfig> expand(@NotNull MethodName methodName, @NotNull TestConfig.EndpointData epData, @NotNull Options options, @Nullable List<String> goodBodyStrings) {
+            return switch (this) {
+                case urlIsForbidden_WithAnyCredentials -> TestSuiteBuilderMethods.urlIsForbidden_WithAnyCredentials(methodName, epData, options);
+                case urlIsUnauthorizedOrForbidden_WithAnyCredentials -> TestSuiteBuilderMethods.urlIsUnauthorizedOrForbidden_WithAnyCredentials(methodName, epData, options);
+                case urlIsAccessible_OnlyWithGoodCredentials -> TestSuiteBuilderMethods.urlIsAccessible_OnlyWithGoodCredentials(methodName, epData, options);
+                case urlIsAccessible_WithoutCredentials -> TestSuiteBuilderMethods.urlIsAccessible_WithoutCredentials(methodName, epData, options);
+                case urlIsMissing_WithAnyCredentials -> TestSuiteBuilderMethods.urlIsMissing_WithAnyCredentials(methodName, epData, options);
+                case urlIsMissing_WithGoodCredentialsOnly -> {
+                    assert goodBodyStrings != null;
+                    yield TestSuiteBuilderMethods.urlIsMissing_WithGoodCredentialsOnly(methodName, epData, options, goodBodyStrings);
+                }
+                case urlIsMoved_WithAnyCredentials -> TestSuiteBuilderMethods.urlIsMoved_WithAnyCredentials(methodName, epData, options);
+                case urlIsMoved_OnlyWithGoodCredentials -> TestSuiteBuilderMethods.urlIsMoved_OnlyWithGoodCredentials(methodName, epData, options);
+            };
+        }
+    }
+
+    // ---
+    // What the options at some level amount to
+    // ---
+
+    private record Layer(@NotNull Options options, @NotNull Scheme scheme) {
+    }
+
+    private final @NotNull Path path;
+    private final @NotNull MachineName machine;
+    private final @NotNull Map<String, Credentials> namedCreds;
+
+    // ---
+    // "namedCreds" are the credentials that the file can refer to by name ("tools", "wiki")
+    // ---
+
+    public SuiteFile(@NotNull Path path, @NotNull MachineName machine, @NotNull Map<String, Credentials> namedCreds) {
+        this.path = path;
+        this.machine = machine;
+        this.namedCreds = Map.copyOf(namedCreds);
+    }
+
+    public @NotNull Path getPath() {
+        return path;
+    }
+
+    // the suite name if the file doesn't give one
+
+    public @NotNull String getDefaultName() {
+        return defaultName(path);
+    }
+
+    public static @NotNull String defaultName(@NotNull Path path) {
+        final String fileName = path.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        return (dot > 0) ? fileName.substring(0, dot) : fileName;
+    }
+
+    private @NotNull JsonParser openParser() throws IOException {
+        final String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        final JsonFactory factory;
+        if (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) {
+            // SnakeYAML refuses documents of more than 3 MiB by default, a suite of 100'000 paths is larger
+            final var loaderOptions = new LoaderOptions();
+            loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+            factory = YAMLFactory.builder().loaderOptions(loaderOptions).build();
+        } else if (fileName.endsWith(".json")) {
+            factory = new JsonFactory();
+        } else {
+            throw new SuiteFileException("The suite file '" + path + "' must end in '.yaml', '.yml' or '.json'");
+        }
+        return factory.createParser(path.toFile());
+    }
+
+    @Override
+    public @NotNull Iterator<TestConfig> iterator() {
+        try {
+            return new Reader(openParser());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the suite file '" + path + "'", e);
+        }
+    }
+
+    // ---
+    // The iterator, a state machine over the tokens of the file. Each step reads up to
+    // the next path (or to the end) and expands that path into its TestConfigs.
+    // ---
+
+    private class Reader implements Iterator<TestConfig> {
+
+        private enum State {start, groups, tests, paths, done}
+
+        private final @NotNull JsonParser parser;
+        private final @NotNull Deque<TestConfig> ready = new ArrayDeque<>();
+        private @NotNull State state = State.start;
+        private @NotNull String suiteName = getDefaultName();
+        private @NotNull Layer defaults = new Layer(new Options(), Scheme.https);
+        private @Nullable MethodName groupMethodName;
+        private @Nullable Layer groupLayer;
+        // the test being read
+        private @Nullable Pattern pattern;
+        private @Nullable Layer testLayer;
+        private @Nullable List<String> goodBodyStrings;
+        private @Nullable String singlePath;
+
+        Reader(@NotNull JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && state != State.done) {
+                try {
+                    step();
+                } catch (RuntimeException exe) {
+                    state = State.done;
+                    closeQuietly();
+                    throw exe;
+                }
+            }
+            return !ready.isEmpty();
+        }
+
+        @Override
+        public @NotNull TestConfig next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return ready.poll();
+        }
+
+        private void closeQuietly() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // nothing more to read anyway
+            }
+        }
+
+        private @NotNull SuiteFileException fail(@NotNull String msg) {
+            final var location = parser.currentTokenLocation();
+            return new SuiteFileException("Suite file '" + path + "', line " + location.getLineNr() + ", column " + location.getColumnNr() + ": " + msg);
+        }
+
+        // malformed YAML or JSON
+
+        private @NotNull SuiteFileException fail(@NotNull JsonProcessingException exe) {
+            final var location = exe.getLocation();
+            final String where = (location != null) ? ", line " + location.getLineNr() + ", column " + location.getColumnNr() : "";
+            return new SuiteFileException("Suite file '" + path + "'" + where + ": " + exe.getOriginalMessage(), exe);
+        }
+
+        private @Nullable JsonToken nextToken() {
+            try {
+                return parser.nextToken();
+            } catch (JsonProcessingException e) {
+                throw fail(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Reading the suite file '" + path + "' failed", e);
+            }
+        }
+
+        private void expect(@NotNull JsonToken expected, @NotNull String what) {
+            if (nextToken() != expected) {
+                throw fail("Expected " + what);
+            }
+        }
+
+        private @NotNull String currentText() {
+            try {
+                return parser.getText();
+            } catch (JsonProcessingException e) {
+                throw fail(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Reading the suite file '" + path + "' failed", e);
+            }
+        }
+
+        private @NotNull String readScalar(@NotNull String field) {
+            final JsonToken token = nextToken();
+            if (token == null || !token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+                throw fail("The value of '" + field + "' must be a single value");
+            }
+            return currentText();
+        }
+
+        private @NotNull List<String> readStrings(@NotNull String field) {
+            final JsonToken token = nextToken();
+            if (token != null && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                return List.of(currentText());
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw fail("The value of '" + field + "' must be a list of strings");
+            }
+            final List<String> res = new ArrayList<>();
+            JsonToken elem;
+            while ((elem = nextToken()) != JsonToken.END_ARRAY) {
+                if (elem == null || !elem.isScalarValue() || elem == JsonToken.VALUE_NULL) {
+                    throw fail("The value of '" + field + "' must be a list of strings");
+                }
+                res.add(currentText());
+            }
+            return res;
+        }
+
+        private @NotNull Credentials readCredentials(@NotNull String field) {
+            final JsonToken token = nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                final Credentials creds = namedCreds.get(currentText());
+                if (creds == null) {
+                    throw fail("Unknown credentials '" + currentText() + "' for '" + field + "', known are " + new TreeSet<>(namedCreds.keySet()));
+                }
+                return creds;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw fail("The value of '" + field + "' must be the name of credentials or {user: ..., pass: ...}");
+            }
+            String user = null;
+            String pass = null;
+            while (nextToken() == JsonToken.FIELD_NAME) {
+                final String name = currentText();
+                switch (name) {
+                    case "user" -> user = readScalar(name);
+                    case "pass" -> pass = readScalar(name);
+                    default -> throw fail("Unknown entry '" + name + "' in '" + field + "'");
+                }
+            }
+            if (user == null || pass == null) {
+                throw fail("The value of '" + field + "' needs both 'user' and 'pass'");
+            }
+            return new Credentials(user, pass);
+        }
+
+        private <E extends Enum<E>> @NotNull E readEnum(@NotNull String field, @NotNull Class<E> enumClass) {
+            final String text = readScalar(field);
+            try {
+                return Enum.valueOf(enumClass, text);
+            } catch (IllegalArgumentException e) {
+                throw fail("Unknown value '" + text + "' for '" + field + "', known are " + Arrays.toString(enumClass.getEnumConstants()));
+            }
+        }
+
+        private boolean readBoolean(@NotNull String field) {
+            final JsonToken token = nextToken();
+            if (token == JsonToken.VALUE_TRUE) {
+                return true;
+            } else if (token == JsonToken.VALUE_FALSE) {
+                return false;
+            } else {
+                throw fail("The value of '" + field + "' must be true or false");
+            }
+        }
+
+        // ---
+        // If "field" is one of the options, read its value and return the layer with
+        // the option changed, otherwise return null.
+        // ---
+
+        private @Nullable Layer readOption(@NotNull String field, @NotNull Layer layer) {
+            final Options options = layer.options();
+            return switch (field) {
+                case "goodCreds" -> new Layer(options.withGoodCreds(readCredentials(field)), layer.scheme());
+                case "badCreds" -> new Layer(options.withBadCreds(readCredentials(field)), layer.scheme());
+                case "isrPossible" -> new Layer(options.withIsIsrPossible(readBoolean(field)), layer.scheme());
+                case "bodyStrings" -> new Layer(options.withBodyStrings(substituteMachine(readStrings(field))), layer.scheme());
+                case "alsoAdd" -> new Layer(options.withAlsoAddToPrintout(readEnum(field, AlsoAdd.class)), layer.scheme());
+                case "scheme" -> new Layer(options, readEnum(field, Scheme.class));
+                default -> null;
+            };
+        }
+
+        private @NotNull List<String> substituteMachine(@NotNull List<String> strings) {
+            return strings.stream().map(str -> str.replace("${machine}", machine.toString())).toList();
+        }
+
+        private @NotNull Layer readLayer(@NotNull String field, @NotNull Layer layer) {
+            expect(JsonToken.START_OBJECT, "a mapping of options for '" + field + "'");
+            while (nextToken() == JsonToken.FIELD_NAME) {
+                final String name = currentText();
+                final Layer changed = readOption(name, layer);
+                if (changed == null) {
+                    throw fail("Unknown option '" + name + "'");
+                }
+                layer = changed;
+            }
+            return layer;
+        }
+
+        private void step() {
+            switch (state) {
+                case start -> readSuiteHeader();
+                case groups -> readGroupHeader();
+                case tests -> readTestHeader();
+                case paths -> readPath();
+                case done -> throw new IllegalStateException("Program error");
+            }
+        }
+
+        private void readSuiteHeader() {
+            expect(JsonToken.START_OBJECT, "a mapping at the top level");
+            while (nextToken() == JsonToken.FIELD_NAME) {
+                final String name = currentText();
+                switch (name) {
+                    case "name" -> suiteName = readScalar(name);
+                    case "defaults" -> defaults = readLayer(name, defaults);
+                    case "groups" -> {
+                        expect(JsonToken.START_ARRAY, "a list of groups");
+                        state = State.groups;
+                        return;
+                    }
+                    default -> throw fail("Unknown entry '" + name + "' in the suite");
+                }
+            }
+            throw fail("The suite has no 'groups'");
+        }
+
+        private void readGroupHeader() {
+            final JsonToken token = nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                if (nextToken() != JsonToken.END_OBJECT) {
+                    throw fail("'groups' must be the last entry of the suite");
+                }
+                state = State.done;
+                closeQuietly();
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw fail("Expected a group");
+            }
+            groupMethodName = null;
+            groupLayer = defaults;
+            while (nextToken() == JsonToken.FIELD_NAME) {
+                final String name = currentText();
+                if (name.equals("name")) {
+                    final String groupName = readScalar(name);
+                    try {
+                        groupMethodName = new MethodName(suiteName + ":" + groupName);
+                    } catch (IllegalArgumentException e) {
+                        throw fail("The group name '" + groupName + "' is not usable: " + e.getMessage());
+                    }
+                } else if (name.equals("tests")) {
+                    if (groupMethodName == null) {
+                        throw fail("The group needs a 'name' before its 'tests'");
+                    }
+                    expect(JsonToken.START_ARRAY, "a list of tests");
+                    state = State.tests;
+                    return;
+                } else {
+                    final Layer changed = readOption(name, groupLayer);
+                    if (changed == null) {
+                        throw fail("Unknown entry '" + name + "' in a group");
+                    }
+                    groupLayer = changed;
+                }
+            }
+            throw fail("The group has no 'tests'");
+        }
+
+        private void readTestHeader() {
+            final JsonToken token = nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                if (nextToken() != JsonToken.END_OBJECT) {
+                    throw fail("'tests' must be the last entry of a group");
+                }
+                state = State.groups;
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw fail("Expected a test");
+            }
+            assert groupLayer != null;
+            pattern = null;
+            testLayer = groupLayer;
+            goodBodyStrings = null;
+            singlePath = null;
+            while (nextToken() == JsonToken.FIELD_NAME) {
+                final String name = currentText();
+                switch (name) {
+                    case "pattern" -> pattern = readEnum(name, Pattern.class);
+                    case "goodBodyStrings" -> goodBodyStrings = substituteMachine(readStrings(name));
+                    case "path" -> singlePath = readScalar(name);
+                    case "paths" -> {
+                        checkTest();
+                        expect(JsonToken.START_ARRAY, "a list of paths");
+                        state = State.paths;
+                        return;
+                    }
+                    default -> {
+                        final Layer changed = readOption(name, testLayer);
+                        if (changed == null) {
+                            throw fail("Unknown entry '" + name + "' in a test");
+                        }
+                        testLayer = changed;
+                    }
+                }
+            }
+            checkTest();
+            if (singlePath == null) {
+                throw fail("The test needs a 'path' or 'paths'");
+            }
+            expand(singlePath);
+        }
+
+        private void checkTest() {
+            if (pattern == null) {
+                throw fail("The test needs a 'pattern' before its 'paths'");
+            }
+            if (pattern == Pattern.urlIsMissing_WithGoodCredentialsOnly && goodBodyStrings == null) {
+                throw fail("The pattern '" + pattern + "' needs 'goodBodyStrings' before its 'paths'");
+            }
+        }
+
+        private void readPath() {
+            final JsonToken token = nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                if (nextToken() != JsonToken.END_OBJECT) {
+                    throw fail("'paths' must be the last entry of a test");
+                }
+                state = State.tests;
+                return;
+            }
+            if (token == null || !token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+                throw fail("Expected a path");
+            }
+            expand(currentText());
+        }
+
+        private void expand(@NotNull String urlPath) {
+            assert pattern != null && testLayer != null && groupMethodName != null;
+            final var epData = new TestConfig.EndpointData(machine, testLayer.scheme(), urlPath);
+            try {
+                ready.addAll(pattern.expand(groupMethodName, epData, testLayer.options(), goodBodyStrings));
+            } catch (IllegalArgumentException e) {
+                // e.g. "good" credentials are needed but none have been given
+                throw fail(e.getMessage());
+            }
+        }
+    }
+}
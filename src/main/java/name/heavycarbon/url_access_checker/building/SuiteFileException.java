@@ -0,0 +1,25 @@
+package name.heavycarbon.url_access_checker.building;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+
+// ---
+// What the SuiteFile throws if the file is not a valid suite: wrong extension, malformed
+// YAML or JSON, or an entry that does not make sense (the message gives the place in
+// the file). Failing to read the file at all is an UncheckedIOException instead.
+// ---
+
+public class SuiteFileException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public SuiteFileException(@NotNull String msg) {
+        super(msg);
+    }
+
+    public SuiteFileException(@NotNull String msg, @NotNull Throwable cause) {
+        super(msg, cause);
+    }
+}
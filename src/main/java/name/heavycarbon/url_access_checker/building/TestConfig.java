@@ -2,7 +2,7 @@ package name.heavycarbon.url_access_checker.building;
 
 import name.heavycarbon.url_access_checker.credentials.Credentials;
 import name.heavycarbon.url_access_checker.http.HttpStatusCode;
-import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -62,6 +62,14 @@ public class TestConfig {
         this(endpointData, credData, methodName, Set.of(expected), options);
     }
 
+    // ---
+    // The same test against another endpoint.
+    // ---
+
+    public @NotNull TestConfig withEndpoint(@NotNull TestConfig.EndpointData newEndpointData) {
+        return new TestConfig(newEndpointData, credData, methodName, expectedHttpStatusCodes, options);
+    }
+
     // ---
     // Is a given code expected?
     // ---
@@ -78,6 +86,14 @@ public class TestConfig {
         return expectedHttpStatusCodes.stream().map(sc -> "'" + sc.toStringWithText() + "'").collect(Collectors.joining(" or "));
     }
 
+    // ---
+    // For the machine-readable outputs: the "expected" codes, in ascending order
+    // ---
+
+    public int @NotNull [] getExpectedCodesSorted() {
+        return expectedHttpStatusCodes.stream().mapToInt(HttpStatusCode::getCode).sorted().toArray();
+    }
+
     // ---
     // Getters
     // ---
@@ -109,19 +125,21 @@ public class TestConfig {
     // ---
 
     public @NotNull String stringify(boolean withEndpoint, boolean withMethodName) {
-        final var buf = new StringBuilder();
+        return IndentingWriter.stringify(w -> render(w, withEndpoint, withMethodName));
+    }
+
+    public void render(@NotNull IndentingWriter w, boolean withEndpoint, boolean withMethodName) {
         // Do not print Credentials (just the "selected credentials" value)
-        MyPrinting.joinIfNotEmpty(buf, "Selected credentials : " + getCredData().what());
+        w.line("Selected credentials : " + getCredData().what());
         if (withEndpoint) {
-            MyPrinting.joinIfNotEmpty(buf, "Scheme               : " + endpointData.scheme);
-            MyPrinting.joinIfNotEmpty(buf, "Machine              : " + endpointData.machineName);
-            MyPrinting.joinIfNotEmpty(buf, "Path                 : " + endpointData.path);
+            w.line("Scheme               : " + endpointData.scheme);
+            w.line("Machine              : " + endpointData.machineName);
+            w.line("Path                 : " + endpointData.path);
         }
         if (withMethodName) {
-            MyPrinting.joinIfNotEmpty(buf, "Method               : " + methodName.name());
+            w.line("Method               : " + methodName.name());
         }
-        MyPrinting.joinIfNotEmpty(buf, "Expected codes       : " + stringifyExpectedHttpStatusCodes());
-        return MyPrinting.makeString(buf);
+        w.line("Expected codes       : " + stringifyExpectedHttpStatusCodes());
     }
 
 }
@@ -0,0 +1,147 @@
+package name.heavycarbon.url_access_checker.dns;
+
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+
+ Resolves each host once per run and keeps ("pins") the answer, so that all the tests
+ against a machine go to the same addresses, in the same order, even if the machine sits
+ behind DNS round-robin, and so that a slow resolver is only waited for once.
+
+ > HttpClient --> InetAddress.getAllByName() --> PinningResolverProvider's resolver --> DnsPinning
+ >                                                                                       |
+ >                                        "--resolve host:ip" override, or pinned answer, or
+ >                                        the JDK's built-in resolver (once per host)
+
+ A failed lookup is pinned as well, so a host that cannot be resolved fails the same way
+ for every test instead of every test waiting for the resolver again.
+
+ The JDK picks up the PinningResolverProvider through META-INF/services when it resolves
+ the first name, for the whole JVM, so this is static state. "isInstalled()" tells whether
+ that has happened (it does not if the JVM has been told to use another resolver).
+ clear() starts over, for the next run in the same JVM.
+ */
+
+public abstract class DnsPinning {
+
+    // ---
+    // A "--resolve host:ip" given on the command line: "host" always resolves to "address"
+    // ---
+
+    public record Override(@NotNull String host, @NotNull InetAddress address) {
+    }
+
+    private record Key(@NotNull String host, int characteristics) {
+    }
+
+    // the addresses, or the UnknownHostException that the lookup ended with
+
+    private record Pin(@NotNull List<InetAddress> addresses, @Nullable UnknownHostException failure) {
+    }
+
+    private static final @NotNull Map<String, InetAddress> overrides = new ConcurrentHashMap<>();
+    private static final @NotNull Map<Key, CompletableFuture<Pin>> pins = new ConcurrentHashMap<>();
+    private static final @NotNull AtomicLong lookups = new AtomicLong();
+    private static final @NotNull AtomicLong resolved = new AtomicLong(); // lookups that went to the built-in resolver
+    private static final @NotNull AtomicLong resolvingNanos = new AtomicLong();
+    private static volatile boolean installed = false;
+
+    static void markInstalled() {
+        installed = true;
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    public static void addOverride(@NotNull Override override) {
+        overrides.put(override.host().toLowerCase(), override.address());
+    }
+
+    // forget the pins and the overrides, and reset the statistics
+
+    public static void clear() {
+        overrides.clear();
+        pins.clear();
+        lookups.set(0);
+        resolved.set(0);
+        resolvingNanos.set(0);
+    }
+
+    // ---
+    // Called by the resolver for every lookup by name that the JDK does not answer from
+    // its own cache. The first thread to ask for a host resolves it, the others wait for
+    // its answer.
+    // ---
+
+    static @NotNull Stream<InetAddress> lookupByName(@NotNull InetAddressResolver builtin, @NotNull String host, @NotNull InetAddressResolver.LookupPolicy lookupPolicy) throws UnknownHostException {
+        lookups.incrementAndGet();
+        final InetAddress override = overrides.get(host.toLowerCase());
+        if (override != null) {
+            return Stream.of(InetAddress.getByAddress(host, override.getAddress()));
+        }
+        final var key = new Key(host.toLowerCase(), lookupPolicy.characteristics());
+        final var fresh = new CompletableFuture<Pin>();
+        final CompletableFuture<Pin> existing = pins.putIfAbsent(key, fresh);
+        final Pin pin;
+        if (existing == null) {
+            try {
+                pin = resolve(builtin, host, lookupPolicy);
+            } catch (RuntimeException exe) {
+                // not pinned, the next lookup tries again; the ones waiting get the exception
+                pins.remove(key, fresh);
+                fresh.completeExceptionally(exe);
+                throw exe;
+            }
+            fresh.complete(pin);
+        } else {
+            pin = existing.join();
+        }
+        if (pin.failure() != null) {
+            // a new instance, so that the stack trace is that of the caller
+            throw new UnknownHostException(pin.failure().getMessage());
+        }
+        return pin.addresses().stream();
+    }
+
+    private static @NotNull Pin resolve(@NotNull InetAddressResolver builtin, @NotNull String host, @NotNull InetAddressResolver.LookupPolicy lookupPolicy) {
+        final long start = System.nanoTime();
+        try {
+            return new Pin(builtin.lookupByName(host, lookupPolicy).toList(), null);
+        } catch (UnknownHostException e) {
+            return new Pin(List.of(), e);
+        } finally {
+            resolved.incrementAndGet();
+            resolvingNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public static @NotNull String stringifyStatistics() {
+        final var buf = new StringBuilder();
+        if (!installed) {
+            MyPrinting.joinIfNotEmpty(buf, "DNS pinning              : not installed, the JVM resolved names itself");
+        } else {
+            MyPrinting.joinIfNotEmpty(buf, "DNS lookups              : " + lookups.get());
+            MyPrinting.joinIfNotEmpty(buf, "DNS lookups resolved     : " + resolved.get() + String.format(" (%.3f ms in total)", resolvingNanos.get() / 1_000_000.0));
+            MyPrinting.joinIfNotEmpty(buf, "DNS overrides            : " + overrides.size());
+        }
+        return MyPrinting.makeString(buf);
+    }
+}
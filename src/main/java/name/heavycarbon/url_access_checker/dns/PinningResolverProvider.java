@@ -0,0 +1,41 @@
+package name.heavycarbon.url_access_checker.dns;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolverProvider;
+import java.util.stream.Stream;
+
+// ---
+// Loaded by the JDK through META-INF/services/java.net.spi.InetAddressResolverProvider
+// (see DnsPinning). Lookups by name go through the DnsPinning, reverse lookups go to the
+// JDK's built-in resolver unchanged.
+// ---
+
+public class PinningResolverProvider extends InetAddressResolverProvider {
+
+    @Override
+    public InetAddressResolver get(@NotNull Configuration configuration) {
+        final InetAddressResolver builtin = configuration.builtinResolver();
+        DnsPinning.markInstalled();
+        return new InetAddressResolver() {
+
+            @Override
+            public Stream<InetAddress> lookupByName(@NotNull String host, @NotNull LookupPolicy lookupPolicy) throws UnknownHostException {
+                return DnsPinning.lookupByName(builtin, host, lookupPolicy);
+            }
+
+            @Override
+            public String lookupByAddress(byte[] addr) throws UnknownHostException {
+                return builtin.lookupByAddress(addr);
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return "url_access_checker DNS pinning";
+    }
+}
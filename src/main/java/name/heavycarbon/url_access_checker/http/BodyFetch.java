@@ -0,0 +1,15 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// ---
+// What a FetchingBodyHandler did with the body of a response.
+// "scan" is null if the body was not scanned for body strings.
+// "cutOff" is set if the transfer was stopped because "maxBodyBytes" had been reached
+// before all the body strings had been seen.
+// "capture" is what is kept of the body text, null if it was not decoded.
+// ---
+
+public record BodyFetch(@NotNull FetchStrategy strategy, @Nullable BodyMatcher.Scan scan, long bytesReceived, boolean cutOff, @Nullable CapturedBody capture) {
+}
@@ -0,0 +1,177 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/*
+
+ An Aho-Corasick automaton that looks for a set of strings ("patterns") in a text
+ that arrives piece by piece. The text is scanned exactly once, whatever the number
+ of patterns, and the scan can stop as soon as all the patterns have been seen.
+
+ https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm
+
+ The automaton works on Java chars, i.e. on the decoded text and not on the raw bytes,
+ so that the result is the same as calling String.contains() on the decoded body,
+ whatever the charset of the body.
+
+ The automaton is immutable once built and can be shared between threads. The state
+ of a single scan is kept in a Scan instance, obtained with newScan().
+
+ Node 0 is the root. For each node, the outgoing edges are held in two parallel
+ arrays sorted by character, looked up with binary search.
+ */
+
+public final class BodyMatcher {
+
+    private final @NotNull List<String> patterns;
+    private final char[][] edgeChars; // per node, sorted
+    private final int[][] edgeTargets; // per node, parallel to edgeChars
+    private final int[] fail; // per node, the node for the longest proper suffix that is also in the trie
+    private final int[][] outputs; // per node, indexes of the patterns that end here (including via suffixes)
+
+    public BodyMatcher(@NotNull List<String> patterns) {
+        this.patterns = List.copyOf(patterns);
+        // --- build the trie with maps ---
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        final List<List<Integer>> out = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        out.add(new ArrayList<>());
+        for (int i = 0; i < this.patterns.size(); i++) {
+            int node = 0;
+            for (char ch : this.patterns.get(i).toCharArray()) {
+                Integer next = trie.get(node).get(ch);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    out.add(new ArrayList<>());
+                    trie.get(node).put(ch, next);
+                }
+                node = next;
+            }
+            out.get(node).add(i);
+        }
+        // --- flatten the maps into arrays ---
+        final int nodeCount = trie.size();
+        edgeChars = new char[nodeCount][];
+        edgeTargets = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            final var edges = trie.get(node);
+            edgeChars[node] = new char[edges.size()];
+            edgeTargets[node] = new int[edges.size()];
+            int k = 0;
+            for (var entry : edges.entrySet()) {
+                edgeChars[node][k] = entry.getKey();
+                edgeTargets[node][k] = entry.getValue();
+                k++;
+            }
+        }
+        // --- compute the failure links breadth-first, merging the outputs along them ---
+        fail = new int[nodeCount];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int target : edgeTargets[0]) {
+            fail[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            final int node = queue.poll();
+            for (int k = 0; k < edgeChars[node].length; k++) {
+                final char ch = edgeChars[node][k];
+                final int child = edgeTargets[node][k];
+                int f = fail[node];
+                int next;
+                while ((next = step(f, ch)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = Math.max(next, 0);
+                out.get(child).addAll(out.get(fail[child]));
+                queue.add(child);
+            }
+        }
+        outputs = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            outputs[node] = out.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // the target of the edge labeled "ch" leaving "node", or -1 if there is none
+
+    private int step(int node, char ch) {
+        final int k = Arrays.binarySearch(edgeChars[node], ch);
+        return (k >= 0) ? edgeTargets[node][k] : -1;
+    }
+
+    private int transition(int node, char ch) {
+        int next;
+        while ((next = step(node, ch)) < 0 && node != 0) {
+            node = fail[node];
+        }
+        return Math.max(next, 0);
+    }
+
+    public @NotNull List<String> getPatterns() {
+        return patterns;
+    }
+
+    public @NotNull Scan newScan() {
+        return new Scan();
+    }
+
+    // ---
+    // The state of scanning a single text. Not thread-safe, but a body is only
+    // ever fed by one thread at a time.
+    // ---
+
+    public final class Scan {
+
+        private int node = 0;
+        private final boolean[] found = new boolean[patterns.size()];
+        private int foundCount = 0;
+
+        private Scan() {
+            // the empty string is contained in any text
+            for (int i : outputs[0]) {
+                markFound(i);
+            }
+        }
+
+        private void markFound(int patternIndex) {
+            if (!found[patternIndex]) {
+                found[patternIndex] = true;
+                foundCount++;
+            }
+        }
+
+        public void feed(@NotNull CharSequence text) {
+            for (int i = 0; i < text.length() && !isComplete(); i++) {
+                node = transition(node, text.charAt(i));
+                for (int patternIndex : outputs[node]) {
+                    markFound(patternIndex);
+                }
+            }
+        }
+
+        // ---
+        // All the patterns have been seen, there is no need to look further.
+        // ---
+
+        public boolean isComplete() {
+            return foundCount == found.length;
+        }
+
+        // ---
+        // The patterns not (yet) seen, in the order in which they were given.
+        // ---
+
+        public @NotNull List<String> getMissing() {
+            final List<String> res = new ArrayList<>();
+            for (int i = 0; i < found.length; i++) {
+                if (!found[i]) {
+                    res.add(patterns.get(i));
+                }
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+
+ What is kept of the body of a response that a FetchingBodyHandler decoded ("bounded"
+ or "full"), so that a result never holds more than a bounded amount of body text:
+
+ > bytes received --> length, SHA-256
+ > decoded text   --> first "headChars" characters: kept in memory
+ >                --> the rest: spilled to a temporary file (UTF-8), created on the first character that does not fit
+
+ The length and the hash are about the bytes as they came off the wire (before decoding),
+ as far as they have been received: a "bounded" transfer may have been cut off.
+
+ Each test that checks the response holds the capture, which is one test unless requests
+ are coalesced (see RequestCoalescer, which adds a hold for each test that waited). Once
+ the sinks have had the TestResult (or earlier, for a match that will not be printed), the
+ test calls release(). After the last release, the head is dropped and the temporary file
+ deleted, unless its name has been printed by render(): that one is left behind for
+ inspection. So a temporary file is kept if and only if the user has been told about it.
+ If spilling fails, the rest of the text is dropped and the failure is printed instead.
+
+ As a backstop, the captures whose temporary file is still there are tracked until
+ released, and releaseAll() deletes the unprinted files of those that were not released
+ by the end of a run (e.g. because a sink failed).
+
+ The printed temporary files are not kept forever either: startRun() deletes those of
+ the run before the previous one. So a daemon that keeps printing the same mismatch
+ keeps the files of the last two runs, not one more file per run. A single run only
+ calls startRun() once, before anything has been printed, so its files stay.
+
+ The FetchingBodySubscriber feeds it, but the watchdog of the handler may end it from
+ another thread, and release() is called by the runners, hence the lock.
+ */
+
+public class CapturedBody {
+
+    // the captures that have a temporary file and have not been released yet
+
+    private static final @NotNull Set<CapturedBody> withSpillFile = ConcurrentHashMap.newKeySet();
+
+    // the printed temporary files of the current run and of the previous one, see startRun()
+
+    private static final @NotNull ReentrantLock printedLock = new ReentrantLock();
+    private static @NotNull List<Path> printedThisRun = new ArrayList<>();
+    private static @NotNull List<Path> printedLastRun = new ArrayList<>();
+
+    private final int headChars;
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    private final @NotNull MessageDigest digest;
+    private @Nullable StringBuilder head = new StringBuilder(); // null once released
+    private long length = 0;
+    private long spilledChars = 0;
+    private @Nullable Path spillFile = null;
+    private @Nullable Writer spillWriter = null;
+    private @Nullable String spillProblem = null;
+    private @Nullable String sha256 = null; // set once the body is over
+    private boolean ended = false;
+    private int holders = 1; // the tests that have yet to call release()
+    private boolean spillFilePrinted = false;
+
+    CapturedBody(int headChars) {
+        this.headChars = headChars;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JDK has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the bytes of the body as received; "bytes" is not consumed
+
+    void feedBytes(@NotNull ByteBuffer bytes) {
+        lock.lock();
+        try {
+            if (!ended) {
+                length += bytes.remaining();
+                digest.update(bytes.duplicate());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the decoded text, in order; "text" is not consumed
+
+    void feedText(@NotNull CharBuffer text) {
+        lock.lock();
+        try {
+            if (ended || head == null) {
+                return;
+            }
+            final int fitting = Math.min(text.remaining(), headChars - head.length());
+            head.append(text, 0, fitting); // CharSequence indexes are relative to the position
+            if (fitting < text.remaining()) {
+                spill(text.subSequence(fitting, text.remaining()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void spill(@NotNull CharSequence rest) {
+        if (spillProblem != null) {
+            return;
+        }
+        try {
+            if (spillWriter == null) {
+                spillFile = Files.createTempFile("url_access_checker-body-", ".txt");
+                withSpillFile.add(this);
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+            }
+            spillWriter.append(rest);
+            spilledChars += rest.length();
+        } catch (IOException e) {
+            spillProblem = "Could not write the rest of the body to " + ((spillFile != null) ? "'" + spillFile + "'" : "a temporary file") + ": " + e.getMessage();
+            closeSpillWriter();
+        }
+    }
+
+    private void closeSpillWriter() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                if (spillProblem == null) {
+                    spillProblem = "Could not write the rest of the body to '" + spillFile + "': " + e.getMessage();
+                }
+            }
+            spillWriter = null;
+        }
+    }
+
+    // ---
+    // The body is over (complete, cut off, timed out or failed). Can be called more than once.
+    // ---
+
+    void end() {
+        lock.lock();
+        try {
+            if (!ended) {
+                ended = true;
+                sha256 = HexFormat.of().formatHex(digest.digest());
+                closeSpillWriter();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---
+    // "more" tests will check the response, and release the capture, too.
+    // ---
+
+    void hold(int more) {
+        lock.lock();
+        try {
+            holders += more;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---
+    // Once all the holders have released it, drop the head and delete the temporary file
+    // (unless its name has been printed), the length and the hash stay. Releasing more
+    // often than held does nothing.
+    // ---
+
+    public void release() {
+        lock.lock();
+        try {
+            if (holders > 0 && --holders == 0) {
+                drop();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop() {
+        end();
+        head = null;
+        if (spillFile != null) {
+            withSpillFile.remove(this);
+            if (spillFilePrinted) {
+                printedLock.lock();
+                try {
+                    printedThisRun.add(spillFile);
+                } finally {
+                    printedLock.unlock();
+                }
+            } else {
+                deleteQuietly(spillFile);
+            }
+            spillFile = null;
+        }
+    }
+
+    private static void deleteQuietly(@NotNull Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // a leftover temporary file, no reason to fail the test
+        }
+    }
+
+    // ---
+    // Called at the start of a run: the printed temporary files of the run before the
+    // previous one have been around long enough.
+    // ---
+
+    public static void startRun() {
+        final List<Path> expired;
+        printedLock.lock();
+        try {
+            expired = printedLastRun;
+            printedLastRun = printedThisRun;
+            printedThisRun = new ArrayList<>();
+        } finally {
+            printedLock.unlock();
+        }
+        expired.forEach(CapturedBody::deleteQuietly);
+    }
+
+    // ---
+    // Called at the end of a run: whatever has not been released by then never will be.
+    // ---
+
+    public static void releaseAll() {
+        for (CapturedBody capture : withSpillFile) {
+            capture.lock.lock();
+            try {
+                capture.holders = 0;
+                capture.drop();
+            } finally {
+                capture.lock.unlock();
+            }
+        }
+    }
+
+    // the head of the text, empty once released
+
+    public @NotNull String getHead() {
+        lock.lock();
+        try {
+            return (head != null) ? head.toString() : "";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---
+    // A line about what has been received and where the text beyond the head is, if it has
+    // been spilled. Whether the head itself has been printed just above is "headShown".
+    // ---
+
+    public void render(@NotNull IndentingWriter w, boolean headShown) {
+        lock.lock();
+        try {
+            final var buf = new StringBuilder();
+            buf.append("Body        : ").append(length).append(" bytes received");
+            if (sha256 != null) {
+                buf.append(", SHA-256 ").append(sha256);
+            }
+            if (head == null) {
+                buf.append(", text not kept");
+            } else if (spilledChars > 0 && spillFile != null) {
+                if (headShown) {
+                    buf.append(", first ").append(head.length()).append(" characters shown, ").append(spilledChars).append(" more in '").append(spillFile).append("'");
+                } else {
+                    buf.append(", the ").append(spilledChars).append(" characters after the first ").append(head.length()).append(" in '").append(spillFile).append("'");
+                }
+                spillFilePrinted = true;
+            }
+            w.line(buf.toString());
+            if (spillProblem != null) {
+                w.line(spillProblem);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+// ---
+// The point in time by which the whole run has to be over, if there is one.
+// Timeouts are capped to what is left until then, so that every request ends by the
+// deadline, and once it has passed, no more requests are sent (see HttpRequesting)
+// and no more tests are started (see the runners).
+// ---
+
+public class Deadline {
+
+    private final long atNanos; // on the System.nanoTime() clock, meaningless if there is no deadline
+    private final boolean none;
+
+    private Deadline(long atNanos, boolean none) {
+        this.atNanos = atNanos;
+        this.none = none;
+    }
+
+    public static @NotNull Deadline none() {
+        return new Deadline(0, true);
+    }
+
+    // the deadline is "budget" from now
+
+    public static @NotNull Deadline after(@NotNull Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), false);
+    }
+
+    public boolean isNone() {
+        return none;
+    }
+
+    public boolean isExpired() {
+        return !none && System.nanoTime() - atNanos >= 0;
+    }
+
+    // what is left, Long.MAX_VALUE if there is no deadline, 0 if it has passed
+
+    public long remainingNanos() {
+        return none ? Long.MAX_VALUE : Math.max(0, atNanos - System.nanoTime());
+    }
+
+    // ---
+    // "timeout", or what is left until the deadline if that is less (at least a millisecond,
+    // as HttpRequest.timeout() does not take zero).
+    // ---
+
+    public @NotNull Duration cap(@NotNull Duration timeout) {
+        final long remaining = remainingNanos();
+        if (remaining >= timeout.toNanos()) {
+            return timeout;
+        }
+        return Duration.ofNanos(Math.max(remaining, 1_000_000L));
+    }
+}
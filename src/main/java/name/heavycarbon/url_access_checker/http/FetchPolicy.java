@@ -0,0 +1,72 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import org.jetbrains.annotations.NotNull;
+
+// ---
+// Picks the cheapest FetchStrategy that still allows checking a TestConfig.
+//
+// Ranged requests ("Range: bytes=0-N") are not used for "bounded": a server that honors
+// them answers "206 Partial Content" instead of the status code the test expects, and
+// Apache ignores them for error pages anyway. Instead, the body is cut off on the client
+// side once "maxBodyBytes" bytes have been received.
+//
+// Also says how much of a body that is received is kept (see CapturedBody): the first
+// "captureHeadChars" characters in memory, the rest in a temporary file, and for a
+// test that matches, nothing at all unless "keepBodiesOfMatches" (as they are printed).
+// ---
+
+public class FetchPolicy {
+
+    public static final int DEFAULT_CAPTURE_HEAD_CHARS = 8192;
+
+    private final boolean headForStatusOnly;
+    private final long maxBodyBytes;
+    private final int captureHeadChars;
+    private final boolean keepBodiesOfMatches;
+
+    public FetchPolicy(boolean headForStatusOnly, long maxBodyBytes) {
+        this(headForStatusOnly, maxBodyBytes, DEFAULT_CAPTURE_HEAD_CHARS, true);
+    }
+
+    public FetchPolicy(boolean headForStatusOnly, long maxBodyBytes, int captureHeadChars, boolean keepBodiesOfMatches) {
+        if (maxBodyBytes < 1) {
+            throw new IllegalArgumentException("The 'max body bytes' must be at least 1, but is " + maxBodyBytes);
+        }
+        if (captureHeadChars < 0) {
+            throw new IllegalArgumentException("The 'capture head chars' must not be negative, but is " + captureHeadChars);
+        }
+        this.headForStatusOnly = headForStatusOnly;
+        this.maxBodyBytes = maxBodyBytes;
+        this.captureHeadChars = captureHeadChars;
+        this.keepBodiesOfMatches = keepBodiesOfMatches;
+    }
+
+    public @NotNull FetchStrategy chooseStrategy(@NotNull TestConfig testConfig) {
+        if (testConfig.getOptions().getAlsoAdd() == AlsoAdd.httpResponseAndBody) {
+            return FetchStrategy.full; // the body will be printed, whatever happens
+        } else if (testConfig.getOptions().isBodyStringsSet()) {
+            return FetchStrategy.bounded;
+        } else if (headForStatusOnly) {
+            return FetchStrategy.head;
+        } else {
+            return FetchStrategy.discard;
+        }
+    }
+
+    public boolean isHeadForStatusOnly() {
+        return headForStatusOnly;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public int getCaptureHeadChars() {
+        return captureHeadChars;
+    }
+
+    public boolean isKeepBodiesOfMatches() {
+        return keepBodiesOfMatches;
+    }
+}
@@ -0,0 +1,53 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ---
+// Counts, over a run, how often each FetchStrategy has been chosen and how many body bytes
+// have been received, kept (decoded into a String) or not transferred at all.
+// "Not transferred" is only known if the server sent a "Content-Length" header: it is the
+// full length for HEAD requests and the remainder for transfers stopped early.
+// Can be updated concurrently.
+// ---
+
+public class FetchStatistics {
+
+    private final @NotNull Map<FetchStrategy, AtomicLong> strategyCounts = new EnumMap<>(FetchStrategy.class);
+    private final @NotNull AtomicLong bytesReceived = new AtomicLong();
+    private final @NotNull AtomicLong bytesKept = new AtomicLong();
+    private final @NotNull AtomicLong bytesNotTransferred = new AtomicLong();
+
+    public FetchStatistics() {
+        for (FetchStrategy strategy : FetchStrategy.values()) {
+            strategyCounts.put(strategy, new AtomicLong());
+        }
+    }
+
+    public void record(@NotNull FetchStrategy strategy, long received, long kept, long notTransferred) {
+        strategyCounts.get(strategy).incrementAndGet();
+        bytesReceived.addAndGet(received);
+        bytesKept.addAndGet(kept);
+        bytesNotTransferred.addAndGet(notTransferred);
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringify() {
+        final var buf = new StringBuilder();
+        for (FetchStrategy strategy : FetchStrategy.values()) {
+            MyPrinting.joinIfNotEmpty(buf, String.format("%-24s : %d", "Fetches '" + strategy + "'", strategyCounts.get(strategy).get()));
+        }
+        MyPrinting.joinIfNotEmpty(buf, "Body bytes received      : " + bytesReceived.get());
+        MyPrinting.joinIfNotEmpty(buf, "Body bytes kept          : " + bytesKept.get());
+        MyPrinting.joinIfNotEmpty(buf, "Body bytes not received  : " + bytesNotTransferred.get() + " (as far as known from 'Content-Length')");
+        return MyPrinting.makeString(buf);
+    }
+}
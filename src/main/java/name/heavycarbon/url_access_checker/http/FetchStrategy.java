@@ -0,0 +1,14 @@
+package name.heavycarbon.url_access_checker.http;
+
+// ---
+// How much of a response is actually fetched:
+// discard - GET, the body is read off the connection but neither decoded nor kept (status-only tests)
+// head    - HEAD instead of GET, there is no body at all (status-only tests, if the server treats HEAD like GET)
+// bounded - GET, at most a given number of body bytes is decoded and scanned for the body strings,
+//           the transfer stops once they have all been seen
+// full    - GET, the whole body is decoded and kept, because it is to be printed
+// ---
+
+public enum FetchStrategy {
+    discard, head, bounded, full
+}
@@ -0,0 +1,281 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+ A replacement for HttpResponse.BodyHandlers.ofString() that only fetches as much
+ of the body as the FetchStrategy requires:
+
+ - discard: the bytes are counted, but neither decoded nor kept, the body String is empty.
+ - head: there is no body (HEAD request), the body String is empty.
+ - bounded: the bytes are decoded (using the charset of the "Content-Type" header,
+   UTF-8 if there is none, same as ofString()), fed to a BodyMatcher.Scan if there is
+   one, and captured (see CapturedBody: a head in memory, the rest in a temporary file). Once all the body strings have been seen, or once "maxBodyBytes"
+   have been received, the subscription is cancelled, which aborts the transfer of the
+   rest of the body (and makes the HttpClient drop the connection).
+ - full: as "bounded", but the whole body is always received.
+
+ The body String of the HttpResponse is always empty, what has been kept of the text is
+ in the CapturedBody of the BodyFetch, so that it can be dropped once it is not needed.
+
+ The HttpClient's request timeout stops at the response headers, so the body is watched
+ here: if no bytes arrive for "bodyIdle", or once the run's Deadline has passed, the
+ subscription is cancelled and the body completes with an HttpTimeoutException.
+
+ > headers   onNext   onNext                       watchdog
+ >    |--------|--------|---------- bodyIdle ---------->| timeout
+
+ An instance is good for a single request and is to be built just before the request
+ is sent; after the request, getBodyFetch() tells what has been done and recordTimings()
+ books the time until the headers arrived and the time spent on the body.
+ */
+
+public class FetchingBodyHandler implements HttpResponse.BodyHandler<String> {
+
+    private final @NotNull FetchStrategy strategy;
+    private final @Nullable BodyMatcher.Scan scan;
+    private final long maxBodyBytes;
+    private final @NotNull FetchStatistics statistics;
+    private final @NotNull Duration bodyIdle;
+    private final @NotNull Deadline deadline;
+    private final @Nullable CapturedBody capture; // null unless the text is decoded
+    private volatile long bytesReceived = 0;
+    private volatile boolean cutOff = false;
+    private final long startNanos = System.nanoTime();
+    private volatile long headersNanos = 0; // when the headers arrived, 0 if they didn't
+    private volatile long bodyDoneNanos = 0; // when the body was complete (or cut off), 0 if it wasn't
+
+    public FetchingBodyHandler(@NotNull FetchStrategy strategy, @Nullable BodyMatcher bodyMatcher, long maxBodyBytes, @NotNull FetchStatistics statistics, @NotNull Duration bodyIdle, @NotNull Deadline deadline) {
+        this(strategy, bodyMatcher, maxBodyBytes, statistics, bodyIdle, deadline, FetchPolicy.DEFAULT_CAPTURE_HEAD_CHARS);
+    }
+
+    public FetchingBodyHandler(@NotNull FetchStrategy strategy, @Nullable BodyMatcher bodyMatcher, long maxBodyBytes, @NotNull FetchStatistics statistics, @NotNull Duration bodyIdle, @NotNull Deadline deadline, int captureHeadChars) {
+        this.strategy = strategy;
+        this.scan = (bodyMatcher != null && (strategy == FetchStrategy.bounded || strategy == FetchStrategy.full)) ? bodyMatcher.newScan() : null;
+        this.maxBodyBytes = maxBodyBytes;
+        this.statistics = statistics;
+        this.bodyIdle = bodyIdle;
+        this.deadline = deadline;
+        this.capture = (strategy == FetchStrategy.bounded || strategy == FetchStrategy.full) ? new CapturedBody(captureHeadChars) : null;
+    }
+
+    public @NotNull BodyFetch getBodyFetch() {
+        return new BodyFetch(strategy, scan, bytesReceived, cutOff, capture);
+    }
+
+    // ---
+    // Called once the request is over, successfully or not.
+    // ---
+
+    public void recordTimings(@NotNull PhaseTimings timings) {
+        final long endNanos = System.nanoTime();
+        if (headersNanos == 0) {
+            timings.add(PhaseTimings.Phase.headers, endNanos - startNanos);
+        } else {
+            timings.add(PhaseTimings.Phase.headers, headersNanos - startNanos);
+            timings.add(PhaseTimings.Phase.body, ((bodyDoneNanos == 0) ? endNanos : bodyDoneNanos) - headersNanos);
+        }
+    }
+
+    // Same logic as in the JDK's HttpResponse.BodyHandlers.ofString()
+
+    private static @NotNull Charset charsetFrom(@NotNull HttpResponse.ResponseInfo responseInfo) {
+        final String contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        for (String param : contentType.split(";")) {
+            final String p = param.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                final String name = p.substring("charset=".length()).replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<String> apply(@NotNull HttpResponse.ResponseInfo responseInfo) {
+        headersNanos = System.nanoTime();
+        return new FetchingBodySubscriber(charsetFrom(responseInfo), responseInfo.headers().firstValueAsLong("Content-Length"));
+    }
+
+    private class FetchingBodySubscriber implements HttpResponse.BodySubscriber<String> {
+
+        private final @NotNull CharsetDecoder decoder;
+        private final @NotNull OptionalLong contentLength;
+        private final @NotNull CompletableFuture<String> body = new CompletableFuture<>();
+        private ByteBuffer leftover = ByteBuffer.allocate(0); // an incomplete multibyte sequence
+        private long received = 0;
+        private long kept = 0;
+        private Flow.Subscription subscription;
+        private volatile long lastActivityNanos = System.nanoTime(); // when the last bytes arrived
+
+        FetchingBodySubscriber(@NotNull Charset charset, @NotNull OptionalLong contentLength) {
+            // new String(bytes, charset) also replaces what cannot be decoded
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            this.subscription = subscription;
+            lastActivityNanos = System.nanoTime();
+            watchIn(bodyIdle.toNanos());
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        // ---
+        // The watchdog runs on the delayed executor's thread, concurrently with onNext(),
+        // so it only reads "lastActivityNanos" and completes "body", which is atomic.
+        // ---
+
+        private void watchIn(long delayNanos) {
+            final long until = Math.min(delayNanos, deadline.remainingNanos());
+            CompletableFuture.delayedExecutor(until, TimeUnit.NANOSECONDS).execute(this::checkIdle);
+        }
+
+        private void checkIdle() {
+            if (body.isDone()) {
+                return;
+            }
+            final long idleNanos = System.nanoTime() - lastActivityNanos;
+            final String msg;
+            if (deadline.isExpired()) {
+                msg = "The deadline passed while receiving the body";
+            } else if (idleNanos >= bodyIdle.toNanos()) {
+                msg = "No bytes of the body received for " + TimeUnit.NANOSECONDS.toMillis(idleNanos) + " ms";
+            } else {
+                watchIn(bodyIdle.toNanos() - idleNanos);
+                return;
+            }
+            if (body.completeExceptionally(new HttpTimeoutException(msg))) {
+                bodyDoneNanos = System.nanoTime();
+                subscription.cancel();
+                if (capture != null) {
+                    capture.end();
+                }
+            }
+        }
+
+        private boolean isKeeping() {
+            return strategy == FetchStrategy.bounded || strategy == FetchStrategy.full;
+        }
+
+        private void decode(@NotNull ByteBuffer in, boolean endOfInput) {
+            final CharBuffer out = CharBuffer.allocate((int) (in.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+            decoder.decode(in, out, endOfInput);
+            if (endOfInput) {
+                decoder.flush(out);
+            }
+            out.flip();
+            if (scan != null) {
+                scan.feed(out);
+            }
+            assert capture != null;
+            capture.feedText(out);
+        }
+
+        // A "bounded" transfer stops once there is nothing more to learn from the body
+
+        private boolean isEnough() {
+            if (strategy != FetchStrategy.bounded) {
+                return false;
+            }
+            if (scan != null && scan.isComplete()) {
+                return true;
+            }
+            return received >= maxBodyBytes;
+        }
+
+        @Override
+        public void onNext(@NotNull List<ByteBuffer> buffers) {
+            if (body.isDone()) {
+                return;
+            }
+            lastActivityNanos = System.nanoTime();
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+                if (!isKeeping()) {
+                    buffer.position(buffer.limit()); // consume
+                    continue;
+                }
+                kept += buffer.remaining();
+                assert capture != null;
+                capture.feedBytes(buffer);
+                final ByteBuffer in;
+                if (leftover.hasRemaining()) {
+                    in = ByteBuffer.allocate(leftover.remaining() + buffer.remaining()).put(leftover).put(buffer).flip();
+                } else {
+                    in = buffer;
+                }
+                decode(in, false);
+                leftover = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : ByteBuffer.allocate(0);
+            }
+            bytesReceived = received;
+            if (isEnough()) {
+                cutOff = (scan == null || !scan.isComplete());
+                subscription.cancel();
+                finish(false);
+            }
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+            body.completeExceptionally(throwable);
+            if (capture != null) {
+                capture.end();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!body.isDone()) {
+                finish(true);
+            }
+        }
+
+        private void finish(boolean complete) {
+            if (isKeeping()) {
+                decode(leftover, complete);
+            }
+            final long notTransferred;
+            if (strategy == FetchStrategy.head) {
+                notTransferred = contentLength.orElse(0);
+            } else if (!complete && contentLength.isPresent()) {
+                notTransferred = Math.max(0, contentLength.getAsLong() - received);
+            } else {
+                notTransferred = 0;
+            }
+            statistics.record(strategy, received, kept, notTransferred);
+            bodyDoneNanos = System.nanoTime();
+            if (capture != null) {
+                capture.end();
+            }
+            body.complete("");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.building.Scheme;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ---
+// Keeps one long-lived HttpClient per (selected credentials, credentials, HTTP version)
+// for the whole run, instead of building a new HttpClient (and thus opening a new
+// connection, with a full TLS handshake) for every request.
+//
+// An HttpClient keeps its connections open (keep-alive) and hands them out to later
+// requests to the same host. The HttpClient does not tell us whether an exchange used
+// a new or a pooled connection, but for HTTPS each new connection starts with a TLS
+// handshake, which the TlsContext counts once per SSLEngine (i.e. once per connection),
+// whether the session is new or resumed. The HTTPS exchanges beyond the number of
+// handshakes went over pooled connections. (The SSLSession id does not tell, as a
+// resumed session keeps the id of the session it resumes.)
+//
+// With "preferHttp2", HTTPS requests go through HttpClients that offer HTTP/2 (via ALPN
+// during the TLS handshake). All the requests made with the same credentials to the same
+// machine are then multiplexed as streams over a single connection. If the server does not
+// accept HTTP/2, the HttpClient falls back to HTTP/1.1 transparently. Plain HTTP requests
+// always use HTTP/1.1 as we do not want the "h2c" upgrade dance.
+//
+// With "preemptiveAuth", the HttpClients have no Authenticator; the credentials are sent
+// in an "Authorization" header with the first request instead of in answer to the server's
+// "401 Unauthorized" challenge, which saves a round-trip. The HttpClients then do not depend
+// on the credentials, so a single HttpClient per HTTP version is enough.
+//
+// All the HttpClients share the run's TlsContext, so that a TLS session negotiated by one
+// is resumed by the others, and so that the trust store is loaded only once.
+//
+// The HttpClients are built with the "connect" timeout of the Timeouts, the other timeouts
+// are applied per request (see HttpRequesting and FetchingBodyHandler).
+//
+// The registry must be closed at the end of the run, which closes all the HttpClients.
+// ---
+
+public class HttpClientRegistry implements AutoCloseable {
+
+    private record ClientKey(@NotNull TestConfig.WhatCreds what, @Nullable Credentials creds, @NotNull HttpClient.Version version) {
+    }
+
+    private final boolean preferHttp2;
+    private final boolean preemptiveAuth;
+    private final @NotNull Timeouts timeouts;
+    private final @NotNull TlsContext tlsContext = new TlsContext();
+    private final @NotNull Map<ClientKey, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private final @NotNull AtomicInteger clientsBuilt = new AtomicInteger();
+    private final @NotNull AtomicInteger clientsObtained = new AtomicInteger();
+    private final @NotNull AtomicInteger exchangesTracked = new AtomicInteger(); // HTTPS, with a response
+    private final @NotNull AtomicInteger exchangesUntracked = new AtomicInteger(); // plain HTTP, or no response
+    private final @NotNull AtomicInteger connectionsWarmedUp = new AtomicInteger();
+    private final @NotNull AtomicInteger tlsConnectionsWarmedUp = new AtomicInteger(); // their handshakes are not the tests'
+    private final @NotNull Map<HttpClient.Version, AtomicInteger> exchangesPerVersion = new ConcurrentHashMap<>(); // negotiated version
+
+    public HttpClientRegistry(boolean preferHttp2, boolean preemptiveAuth) {
+        this(preferHttp2, preemptiveAuth, Timeouts.defaults());
+    }
+
+    public HttpClientRegistry(boolean preferHttp2, boolean preemptiveAuth, @NotNull Timeouts timeouts) {
+        this.preferHttp2 = preferHttp2;
+        this.preemptiveAuth = preemptiveAuth;
+        this.timeouts = timeouts;
+    }
+
+    public @NotNull Timeouts getTimeouts() {
+        return timeouts;
+    }
+
+    public boolean isPreemptiveAuth() {
+        return preemptiveAuth;
+    }
+
+    // https://www.baeldung.com/java-httpclient-basic-auth
+    // https://stackoverflow.com/questions/75150081/ioexception-too-many-authentication-attempts-limit-3-when-using-jdk-httpcli
+
+    private static Authenticator getAuthenticator(@NotNull Credentials creds) {
+        return new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                // System.out.println("Authentication was requested " + creds.user() + " " + creds.pass());
+                return new PasswordAuthentication(creds.user(), creds.pass().toCharArray());
+            }
+        };
+    }
+
+    // https://docs.oracle.com/en/java/javase/21/docs/api/java.net.http/java/net/http/HttpClient.html
+    // https://docs.oracle.com/en/java/javase/21/docs/api/java.net.http/java/net/http/HttpClient.Builder.html
+    // https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/net/Authenticator.html
+
+    private @NotNull HttpClient buildHttpClient(@NotNull ClientKey key) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(key.version())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(timeouts.connect())
+                .sslContext(tlsContext.getSslContext());
+        if (key.creds() != null) {
+            builder = builder.authenticator(getAuthenticator(key.creds()));
+        }
+        return builder.build();
+    }
+
+    // ---
+    // Obtain the HttpClient to use for the given credentials and scheme, building it if needed.
+    // Can be called concurrently.
+    // ---
+
+    public @NotNull HttpClient obtainHttpClient(@NotNull TestConfig.CredData credData, @NotNull Scheme scheme) {
+        final var version = isHttp2(scheme) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+        final var key = preemptiveAuth
+                ? new ClientKey(TestConfig.WhatCreds.none, null, version)
+                : new ClientKey(credData.what(), credData.creds(), version);
+        clientsObtained.incrementAndGet();
+        return clients.computeIfAbsent(key, k -> {
+            clientsBuilt.incrementAndGet();
+            return buildHttpClient(k);
+        });
+    }
+
+    // true if the requests with this scheme multiplex over a single connection per machine
+
+    public boolean isHttp2(@NotNull Scheme scheme) {
+        return preferHttp2 && scheme == Scheme.https;
+    }
+
+    // ---
+    // Called for the response to a warm-up request (see WarmUp): its connection now sits
+    // in the HttpClient's pool, so the first test to use it counts it as "reused", and
+    // its handshake is not counted as a connection opened by the tests.
+    // ---
+
+    public void recordWarmUpExchange(@NotNull HttpResponse<?> httpResponse) {
+        connectionsWarmedUp.incrementAndGet();
+        if (httpResponse.sslSession().isPresent()) {
+            tlsConnectionsWarmedUp.incrementAndGet();
+        }
+    }
+
+    // ---
+    // Called for every HttpResponse obtained through one of our HttpClients, to
+    // count the exchanges against the connections opened.
+    // ---
+
+    public void recordExchange(@Nullable HttpResponse<?> httpResponse) {
+        if (httpResponse != null) {
+            exchangesPerVersion.computeIfAbsent(httpResponse.version(), v -> new AtomicInteger()).incrementAndGet();
+        }
+        if (httpResponse != null && httpResponse.sslSession().isPresent()) {
+            exchangesTracked.incrementAndGet();
+        } else {
+            exchangesUntracked.incrementAndGet();
+        }
+    }
+
+    public int getClientsBuilt() {
+        return clientsBuilt.get();
+    }
+
+    public int getClientsReused() {
+        return clientsObtained.get() - clientsBuilt.get();
+    }
+
+    // ---
+    // TLS connections opened by the tests: one handshake each (a handshake on a connection
+    // that then yielded no response included).
+    // ---
+
+    public int getConnectionsOpened() {
+        final int handshakes = tlsContext.getFullHandshakes() + tlsContext.getResumedHandshakes();
+        return Math.max(0, handshakes - tlsConnectionsWarmedUp.get());
+    }
+
+    public int getConnectionsReused() {
+        return Math.max(0, exchangesTracked.get() - getConnectionsOpened());
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringifyStatistics() {
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, "HttpClients built        : " + clientsBuilt.get());
+        MyPrinting.joinIfNotEmpty(buf, "HttpClients reused       : " + getClientsReused());
+        if (connectionsWarmedUp.get() > 0) {
+            MyPrinting.joinIfNotEmpty(buf, "Connections warmed up    : " + connectionsWarmedUp.get());
+        }
+        // every TLS connection opened (by the tests or by the warm-up) is one handshake, full or resumed
+        final String byWarmUp = (tlsConnectionsWarmedUp.get() > 0) ? " (and " + tlsConnectionsWarmedUp.get() + " by the warm-up)" : "";
+        MyPrinting.joinIfNotEmpty(buf, "TLS connections opened   : " + getConnectionsOpened() + byWarmUp);
+        MyPrinting.joinIfNotEmpty(buf, "TLS connections reused   : " + getConnectionsReused());
+        MyPrinting.joinIfNotEmpty(buf, "TLS handshakes           : " + tlsContext.getFullHandshakes() + " full, " + tlsContext.getResumedHandshakes() + " resumed");
+        if (!tlsContext.isTrustStoreLoaded()) {
+            MyPrinting.joinIfNotEmpty(buf, "Trust store              : not loaded, the JDK's default was used");
+        }
+        MyPrinting.joinIfNotEmpty(buf, "Exchanges not tracked    : " + exchangesUntracked.get() + " (plain HTTP or no response)");
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            final AtomicInteger count = exchangesPerVersion.get(version);
+            if (count != null) {
+                final String label = HttpRequesting.toStringHttpVersion(version) + " exchanges";
+                MyPrinting.joinIfNotEmpty(buf, String.format("%-24s : %d", label, count.get()));
+            }
+        }
+        return MyPrinting.makeString(buf);
+    }
+
+    // ---
+    // Closing the HttpClients waits for any ongoing exchanges to terminate.
+    // ---
+
+    @Override
+    public void close() {
+        clients.values().forEach(HttpClient::close);
+        clients.clear();
+    }
+}
@@ -2,21 +2,28 @@ package name.heavycarbon.url_access_checker.http;
 
 import name.heavycarbon.url_access_checker.building.TestConfig;
 import name.heavycarbon.url_access_checker.credentials.Credentials;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import name.heavycarbon.url_access_checker.printing.MyPrinting;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
-import java.net.Authenticator;
-import java.net.PasswordAuthentication;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 // ---
 // Functionality around HttpClient
@@ -41,27 +48,24 @@ public class HttpRequesting {
         return key + blanks;
     }
 
-    private static @NotNull String buildTextOfEntry(@NotNull String key, @NotNull List<String> values, int prefixLength) {
+    private static void renderEntry(@NotNull IndentingWriter w, @NotNull String key, @NotNull List<String> values, int prefixLength) {
         assert !values.isEmpty(); // there should at least be an empty string, right??
-        final var buf = new StringBuilder();
         final var prefixIndent = MyPrinting.getStringOfBlanks(prefixLength); // how to indent value
-        MyPrinting.joinIfNotEmpty(buf, fillToPrefixLength(key, prefixLength) + ": " + values.getFirst());
+        w.line(fillToPrefixLength(key, prefixLength) + ": " + values.getFirst());
         boolean first = true;
         for (var value : values) {
             if (!first) {
-                MyPrinting.joinIfNotEmpty(buf, prefixIndent + "  " + value);
+                w.line(prefixIndent + "  " + value);
             }
             first = false;
         }
-        return MyPrinting.makeString(buf);
     }
 
-    private static @NotNull String boxify(String text) {
-        final var buf = new StringBuilder();
+    private static void renderBox(@NotNull IndentingWriter w, String text) {
         try (LineNumberReader lnr = new LineNumberReader(new StringReader(text))) {
             String line;
             while ((line = lnr.readLine()) != null) {
-                MyPrinting.joinIfNotEmpty(buf, "| " + line);
+                w.line("| " + line);
             }
         } catch (IOException e) {
             String suffix = "";
@@ -70,10 +74,9 @@ public class HttpRequesting {
             }
             MyPrinting.logError("IOException" + suffix);
         }
-        return MyPrinting.makeString(buf);
     }
 
-    private static @NotNull String toStringHttpVersion(HttpClient.Version version) {
+    static @NotNull String toStringHttpVersion(@NotNull HttpClient.Version version) {
         return switch (version) {
             case HTTP_2 -> "HTTP/2";
             case HTTP_1_1 -> "HTTP/1.1";
@@ -82,51 +85,192 @@ public class HttpRequesting {
     }
 
     public static @NotNull String buildTextOfResponse(@NotNull HttpResponse<String> httpResponse, boolean addBody) {
-        final var buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, "HTTP version: " + toStringHttpVersion(httpResponse.version())); // this is ugly
-        MyPrinting.joinIfNotEmpty(buf, "Status Code : " + httpResponse.statusCode());
+        return IndentingWriter.stringify(w -> renderResponse(w, httpResponse, addBody));
+    }
+
+    public static void renderResponse(@NotNull IndentingWriter w, @NotNull HttpResponse<String> httpResponse, boolean addBody) {
+        renderResponse(w, httpResponse, addBody, null);
+    }
+
+    // ---
+    // If the body went through a FetchingBodyHandler, the HttpResponse's body is empty and
+    // what has been kept of it is in the "capture".
+    // ---
+
+    public static void renderResponse(@NotNull IndentingWriter w, @NotNull HttpResponse<String> httpResponse, boolean addBody, @Nullable CapturedBody capture) {
+        w.line("HTTP version: " + toStringHttpVersion(httpResponse.version())); // this is ugly
+        w.line("Status Code : " + httpResponse.statusCode());
         final var prefixLength = getCommonPrefixLength(httpResponse.headers().map().keySet());
         for (var entry : httpResponse.headers().map().entrySet()) {
-            final var str1 = buildTextOfEntry(entry.getKey(), entry.getValue(), prefixLength);
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
+            w.indent();
+            renderEntry(w, entry.getKey(), entry.getValue(), prefixLength);
+            w.dedent();
         }
         if (addBody) {
-            MyPrinting.joinIfNotEmpty(buf, boxify(httpResponse.body()));
+            if (capture != null) {
+                renderBox(w, capture.getHead());
+                capture.render(w, true);
+            } else {
+                renderBox(w, httpResponse.body());
+            }
+        } else if (capture != null) {
+            // at least its length and hash, and the name of its temporary file if there is one
+            capture.render(w, false);
         }
-        return MyPrinting.makeString(buf);
     }
 
     // https://docs.oracle.com/en/java/javase/21/docs/api/java.net.http/java/net/http/HttpRequest.html
 
-    private static @NotNull HttpResultInner performHttpRequestInner(@NotNull HttpClient httpClient, @NotNull URI uri) {
+    // ---
+    // The request timeout of the HttpClient runs from sending the request until the response
+    // headers are in (connecting included), which is what the "headers" timeout is about.
+    // It is cut short if the run's Deadline comes earlier.
+    // ---
+
+    private static @NotNull HttpRequest buildHttpRequest(@NotNull URI uri, @NotNull FetchStrategy strategy, @Nullable Credentials preemptiveCreds, @NotNull RequestContext requestContext) {
+        final Duration timeout = requestContext.getDeadline().cap(requestContext.getClientRegistry().getTimeouts().headers());
+        final var builder = HttpRequest
+                .newBuilder(uri)
+                .timeout(timeout)
+                .setHeader("User-Agent", userAgentString);
+        if (preemptiveCreds != null) {
+            builder.setHeader("Authorization", buildBasicAuthorization(preemptiveCreds));
+        }
+        if (strategy == FetchStrategy.head) {
+            builder.HEAD();
+        } else {
+            builder.GET();
+        }
+        return builder.build();
+    }
+
+    // https://datatracker.ietf.org/doc/html/rfc7617
+
+    private static @NotNull String buildBasicAuthorization(@NotNull Credentials creds) {
+        final String userPass = creds.user() + ":" + creds.pass();
+        return "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ---
+    // With preemptive authentication, the credentials of the TestConfig (if any) go into
+    // the request itself, instead of being handed out by the HttpClient's Authenticator.
+    // ---
+
+    private static @Nullable Credentials getPreemptiveCreds(@NotNull TestConfig testConfig, @NotNull RequestContext requestContext) {
+        final TestConfig.CredData credData = testConfig.getCredData();
+        if (requestContext.getClientRegistry().isPreemptiveAuth() && credData.what() != TestConfig.WhatCreds.none) {
+            return credData.creds();
+        } else {
+            return null;
+        }
+    }
+
+    // ---
+    // The body handler fetches only as much of the body as the FetchStrategy requires.
+    // If the Options carry body strings, the body is scanned for them while it is
+    // being received.
+    // ---
+
+    private static @NotNull FetchingBodyHandler buildBodyHandler(@NotNull TestConfig testConfig, @NotNull FetchStrategy strategy, @NotNull RequestContext requestContext) {
+        return new FetchingBodyHandler(
+                strategy,
+                testConfig.getOptions().getBodyMatcher(),
+                requestContext.getFetchPolicy().getMaxBodyBytes(),
+                requestContext.getFetchStatistics(),
+                requestContext.getClientRegistry().getTimeouts().bodyIdle(),
+                requestContext.getDeadline(),
+                requestContext.getFetchPolicy().getCaptureHeadChars());
+    }
+
+    // ---
+    // Once the run's Deadline has passed, no more requests are sent, and a request that timed
+    // out (or was cut short) after it passed did so because of the Deadline, not because the
+    // machine was slow, which is reported as a failure with cause "deadline".
+    // ---
+
+    private static @NotNull HttpResultInner deadlinePassedBeforeSending() {
+        return new HttpResultInnerFailure(
+                HttpResultInnerFailure.FailureType.other_exception,
+                HttpResultInnerFailure.FailureCause.deadline,
+                HttpTimeoutException.class.getName(),
+                "The deadline of the run has passed, the request has not been sent");
+    }
+
+    private static @NotNull HttpResultInner checkDeadline(@NotNull HttpResultInner inner, @NotNull RequestContext requestContext) {
+        if (inner instanceof HttpResultInnerFailure failure
+                && failure.getFailureCause() == HttpResultInnerFailure.FailureCause.timeout
+                && requestContext.getDeadline().isExpired()) {
+            return new HttpResultInnerFailure(
+                    failure.getFailureType(),
+                    HttpResultInnerFailure.FailureCause.deadline,
+                    failure.getExceptionClass(),
+                    "The deadline of the run has passed before the request was over (" + failure.getMsg() + ")");
+        }
+        return inner;
+    }
+
+    // ---
+    // If credentials were sent preemptively and the server still answers "401 Unauthorized",
+    // the credentials are bad. With the Authenticator, this case ends in the IOException handled
+    // by fromIOException(), which is reported as "403 Forbidden" and that's what the test suites
+    // expect. Do the same here, but keep the real HttpResponse.
+    // ---
+
+    private static @NotNull HttpResultInner fromHttpResponse(@NotNull HttpResponse<String> httpResponse, @NotNull FetchingBodyHandler bodyHandler, boolean credsSent) {
+        final boolean badCreds = credsSent && httpResponse.statusCode() == 401;
+        return new HttpResultInnerSuccess(
+                badCreds ? HttpStatusCode.forbidden : HttpStatusCode.fromCode(httpResponse.statusCode()),
+                httpResponse,
+                bodyHandler.getBodyFetch());
+    }
+
+    private static @NotNull HttpResultInner fromIOException(@NotNull IOException e) {
+        // If we couldn't authenticate, HTTPClient *also* throws IOException, and not even a subclass thereof.
+        // Sounds like bad design, how do we weasel out of it?
+        // We try to fake it, but we have no proper HttpResponse to report.
+        if (e.getMessage() != null && e.getMessage().contains("too many authentication attempts")) {
+            return new HttpResultInnerSuccess(
+                    HttpStatusCode.forbidden, // what the server presumably sent, but java.net.HttpClient hid!
+                    null); // HTTP response is missing
+        } else {
+            return new HttpResultInnerFailure(
+                    HttpResultInnerFailure.FailureType.io_exception,
+                    HttpResultInnerFailure.classify(e),
+                    e.getClass().getName(),
+                    e.getMessage() == null ? "(no details)" : e.getMessage());
+        }
+    }
+
+    // ---
+    // The CompletableFuture returned by sendAsync() completes exceptionally with the
+    // exception wrapped into a CompletionException (or not, depending on the stage
+    // at which it happened), so unwrap before looking at it.
+    // ---
+
+    static @NotNull HttpResultInner fromThrowable(@NotNull Throwable t) {
+        final Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+        if (cause instanceof IOException e) {
+            return fromIOException(e);
+        } else {
+            return new HttpResultInnerFailure(
+                    HttpResultInnerFailure.FailureType.other_exception,
+                    cause.getClass().getName(),
+                    cause.getMessage() == null ? "(no details)" : cause.getMessage());
+        }
+    }
+
+    private static @NotNull HttpResultInner performHttpRequestInner(@NotNull HttpClient httpClient, @NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final var strategy = requestContext.getFetchPolicy().chooseStrategy(testConfig);
+        final var preemptiveCreds = getPreemptiveCreds(testConfig, requestContext);
+        final var httpRequest = buildHttpRequest(uri, strategy, preemptiveCreds, requestContext);
+        final var bodyHandler = buildBodyHandler(testConfig, strategy, requestContext);
         try {
-            final var httpRequest = HttpRequest
-                    .newBuilder(uri)
-                    .timeout(Duration.ofSeconds(3))
-                    .GET()
-                    .setHeader("User-Agent", userAgentString)
-                    .build();
             // -----> Going out to the Network ---->
-            final var httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            final var httpResponse = httpClient.send(httpRequest, bodyHandler);
             // <-----
-            return new HttpResultInnerSuccess(
-                    HttpStatusCode.fromCode(httpResponse.statusCode()),
-                    httpResponse);
+            return fromHttpResponse(httpResponse, bodyHandler, preemptiveCreds != null);
         } catch (IOException e) {
-            // If we couldn't authenticate, HTTPClient *also* throws IOException, and not even a subclass thereof.
-            // Sounds like bad design, how do we weasel out of it?
-            // We try to fake it, but we have no proper HttpResponse to report.
-            if (e.getMessage() != null && e.getMessage().contains("too many authentication attempts")) {
-                return new HttpResultInnerSuccess(
-                        HttpStatusCode.forbidden, // what the server presumably sent, but java.net.HttpClient hid!
-                        null); // HTTP response is missing
-            } else {
-                return new HttpResultInnerFailure(
-                        HttpResultInnerFailure.FailureType.io_exception,
-                        e.getClass().getName(),
-                        e.getMessage() == null ? "(no details)" : e.getMessage());
-            }
+            return fromIOException(e);
         } catch (InterruptedException e) {
             // Having been interrupted, set interrupt flag again, and then get out
             Thread.currentThread().interrupt();
@@ -134,53 +278,215 @@ public class HttpRequesting {
                     HttpResultInnerFailure.FailureType.interrupt,
                     e.getClass().getName(),
                     "The thread got interrupted");
+        } finally {
+            bodyHandler.recordTimings(timings);
         }
     }
 
-    // https://www.baeldung.com/java-httpclient-basic-auth
-    // https://stackoverflow.com/questions/75150081/ioexception-too-many-authentication-attempts-limit-3-when-using-jdk-httpcli
+    // ---
+    // The message is assembled first and then printed in one go, so that messages
+    // from tests running concurrently do not get mixed up.
+    // ---
 
-    private static Authenticator getAuthenticator(@NotNull Credentials creds) {
-        return new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                // System.out.println("Authentication was requested " + creds.user() + " " + creds.pass());
-                return new PasswordAuthentication(creds.user(), creds.pass().toCharArray());
-            }
-        };
+    private static void logAccess(@NotNull URI uri, @NotNull TestConfig testConfig) {
+        final var buf = new StringBuilder();
+        buf.append("\n");
+        buf.append("Accessing URI '").append(uri).append("' with ");
+        if (testConfig.getCredData().what() == TestConfig.WhatCreds.none) {
+            buf.append("no credentials");
+        } else {
+            buf.append(testConfig.getCredData().what()).append(" credentials: ").append(testConfig.getCredData().creds());
+        }
+        MyPrinting.log(buf);
     }
 
-    // https://docs.oracle.com/en/java/javase/21/docs/api/java.net.http/java/net/http/HttpClient.html
-    // https://docs.oracle.com/en/java/javase/21/docs/api/java.net.http/java/net/http/HttpClient.Builder.html
-    // https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/net/Authenticator.html
-
-    private static @NotNull HttpResultInner buildHttpClientAndPerformRequest(@NotNull URI uri, @NotNull TestConfig testConfig) {
-        HttpClient.Builder builder = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .followRedirects(HttpClient.Redirect.NEVER)
-                .connectTimeout(Duration.ofSeconds(3));
-        if (testConfig.getCredData().creds() != null) {
-            builder = builder.authenticator(getAuthenticator(testConfig.getCredData().creds()));
-        }
-        // HttpClient implements AutoCloseable.
-        // Use try-with-resources to have HttpClient.close() called automatically.
-        try (HttpClient httpClient = builder.build()) {
-            MyPrinting.newline(true);
-            MyPrinting.log("Accessing URI '" + uri + "' with ");
-            if (testConfig.getCredData().what() == TestConfig.WhatCreds.none) {
-                MyPrinting.log("no credentials");
-            } else {
-                MyPrinting.log(testConfig.getCredData().what() + " credentials: " + testConfig.getCredData().creds());
+    // ---
+    // The HttpClient comes from the registry and is shared with other requests using the
+    // same credentials, so it must not be closed here.
+    // ---
+
+    private static @NotNull HttpClient obtainHttpClient(@NotNull TestConfig testConfig, @NotNull HttpClientRegistry clientRegistry, @NotNull PhaseTimings timings) {
+        final long start = System.nanoTime();
+        final HttpClient httpClient = clientRegistry.obtainHttpClient(testConfig.getCredData(), testConfig.getEndpoint().scheme());
+        timings.add(PhaseTimings.Phase.client_acquire, System.nanoTime() - start);
+        return httpClient;
+    }
+
+    static @NotNull HttpResultInner obtainHttpClientAndPerformRequest(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        if (requestContext.getDeadline().isExpired()) {
+            return deadlinePassedBeforeSending();
+        }
+        final HttpClientRegistry clientRegistry = requestContext.getClientRegistry();
+        final HttpClient httpClient = obtainHttpClient(testConfig, clientRegistry, timings);
+        if (requestContext.isLogAccesses()) {
+            logAccess(uri, testConfig);
+        }
+        // ------>
+        final HttpResultInner inner = performHttpRequestInner(httpClient, uri, testConfig, requestContext, timings);
+        // <------
+        clientRegistry.recordExchange(inner instanceof HttpResultInnerSuccess success ? success.getHttpResponse() : null);
+        return checkDeadline(inner, requestContext);
+    }
+
+    // ---
+    // A request sent with sendAsync(): "result" completes (never exceptionally) once the
+    // response has been obtained or the request failed. Cancelling "response" (if the
+    // request could be sent at all) aborts the exchange.
+    // ---
+
+    record AsyncExchange(@NotNull CompletableFuture<HttpResultInner> result, @Nullable CompletableFuture<?> response) {
+
+        void cancel() {
+            if (response != null) {
+                response.cancel(true);
             }
+        }
+    }
+
+    // ---
+    // The non-blocking variant: the request is sent with sendAsync() and the returned
+    // CompletableFuture completes (never exceptionally) once the response has been
+    // obtained or the request failed. The HttpClient's executor threads complete it.
+    // ---
+
+    private static @NotNull CompletableFuture<HttpResultInner> obtainHttpClientAndPerformRequestAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        return startAsyncExchange(uri, testConfig, requestContext, timings).result();
+    }
+
+    static @NotNull AsyncExchange startAsyncExchange(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        if (requestContext.getDeadline().isExpired()) {
+            return new AsyncExchange(CompletableFuture.completedFuture(deadlinePassedBeforeSending()), null);
+        }
+        final HttpClientRegistry clientRegistry = requestContext.getClientRegistry();
+        final HttpClient httpClient = obtainHttpClient(testConfig, clientRegistry, timings);
+        if (requestContext.isLogAccesses()) {
+            logAccess(uri, testConfig);
+        }
+        final var strategy = requestContext.getFetchPolicy().chooseStrategy(testConfig);
+        final var bodyHandler = buildBodyHandler(testConfig, strategy, requestContext);
+        final var preemptiveCreds = getPreemptiveCreds(testConfig, requestContext);
+        final CompletableFuture<HttpResponse<String>> responseFuture;
+        try {
             // ------>
-            return performHttpRequestInner(httpClient, uri);
+            responseFuture = httpClient.sendAsync(buildHttpRequest(uri, strategy, preemptiveCreds, requestContext), bodyHandler);
+        } catch (RuntimeException e) {
+            bodyHandler.recordTimings(timings);
+            return new AsyncExchange(CompletableFuture.completedFuture(fromThrowable(e)), null);
+        }
+        final CompletableFuture<HttpResultInner> result = responseFuture.handle((httpResponse, throwable) -> {
             // <------
+            bodyHandler.recordTimings(timings);
+            final HttpResultInner inner = (throwable == null) ? fromHttpResponse(httpResponse, bodyHandler, preemptiveCreds != null) : fromThrowable(throwable);
+            clientRegistry.recordExchange(httpResponse);
+            return checkDeadline(inner, requestContext);
+        });
+        return new AsyncExchange(result, responseFuture);
+    }
+
+    // ---
+    // A HEAD request that only serves to open (and, for HTTPS, handshake) a connection of
+    // the HttpClient that "testConfig" will use, which then stays in the HttpClient's pool.
+    // The CompletableFuture completes with true if there has been an answer, whatever it
+    // was, and with false if the request failed. It never completes exceptionally.
+    // ---
+
+    public static @NotNull CompletableFuture<Boolean> warmUpAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext) {
+        final HttpClientRegistry clientRegistry = requestContext.getClientRegistry();
+        final HttpClient httpClient = clientRegistry.obtainHttpClient(testConfig.getCredData(), testConfig.getEndpoint().scheme());
+        final HttpRequest httpRequest = buildHttpRequest(uri, FetchStrategy.head, getPreemptiveCreds(testConfig, requestContext), requestContext);
+        try {
+            return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding()).handle((httpResponse, throwable) -> {
+                if (throwable != null) {
+                    return false;
+                }
+                clientRegistry.recordWarmUpExchange(httpResponse);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    // ---
+    // With an active RetryPolicy, a test may send several requests (see Retrying).
+    // ---
+
+    public static @NotNull CompletableFuture<HttpResultInner> performHttpRequestAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final Supplier<CompletableFuture<HttpResultInner>> performer;
+        if (requestContext.getRetryPolicy().isActive()) {
+            performer = () -> Retrying.performAsync(uri, testConfig, requestContext, timings);
+        } else {
+            performer = () -> obtainHttpClientAndPerformRequestAsync(uri, testConfig, requestContext, timings);
+        }
+        final RequestCoalescer coalescer = requestContext.getCoalescer();
+        if (coalescer == null) {
+            return performer.get();
+        } else {
+            return coalesce(coalescer, uri, testConfig, requestContext, timings, performer);
         }
     }
 
-    public static @NotNull HttpResultOuter performHttpRequestAndCheckResponse(@NotNull URI uri, @NotNull TestConfig testConfig) {
-        final HttpResultInner inner = buildHttpClientAndPerformRequest(uri, testConfig);
-        return inner.checkHttpResponse(uri, testConfig);
+    // ---
+    // If the exchange is performed by another test, the time spent waiting for it
+    // is booked as "headers".
+    // ---
+
+    private static @NotNull CompletableFuture<HttpResultInner> coalesce(@NotNull RequestCoalescer coalescer, @NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings, @NotNull Supplier<CompletableFuture<HttpResultInner>> performer) {
+        final var strategy = requestContext.getFetchPolicy().chooseStrategy(testConfig);
+        final long waitStart = System.nanoTime();
+        final var performedHere = new AtomicBoolean(false);
+        return coalescer.coalesce(uri, testConfig, strategy, () -> {
+            performedHere.set(true);
+            return performer.get();
+        }).thenApply(inner -> {
+            if (!performedHere.get()) {
+                timings.add(PhaseTimings.Phase.headers, System.nanoTime() - waitStart);
+            }
+            return inner;
+        });
+    }
+
+    // ---
+    // When coalescing, the first thread to ask for an exchange performs it (blocking),
+    // the others wait for its result.
+    // ---
+
+    public static @NotNull HttpResultOuter performHttpRequestAndCheckResponse(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final Supplier<HttpResultInner> performer;
+        if (requestContext.getRetryPolicy().isActive()) {
+            performer = () -> Retrying.perform(uri, testConfig, requestContext, timings);
+        } else {
+            performer = () -> obtainHttpClientAndPerformRequest(uri, testConfig, requestContext, timings);
+        }
+        final RequestCoalescer coalescer = requestContext.getCoalescer();
+        final HttpResultInner inner;
+        if (coalescer == null) {
+            inner = performer.get();
+        } else {
+            inner = coalesce(coalescer, uri, testConfig, requestContext, timings, () -> CompletableFuture.completedFuture(performer.get())).join();
+        }
+        return checkHttpResponse(inner, uri, testConfig, requestContext, timings);
+    }
+
+    // ---
+    // A match needs nothing of the body unless it is printed with its body, so what has
+    // been kept of it is dropped right away (and its temporary file deleted). Not so when
+    // coalescing, as the same result may be checked for another test, which may not match.
+    // In any case, the runner releases the body once the sinks have had the TestResult,
+    // which does nothing if it has been released here already.
+    // ---
+
+    public static @NotNull HttpResultOuter checkHttpResponse(@NotNull HttpResultInner inner, @NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final long start = System.nanoTime();
+        final HttpResultOuter outer = inner.checkHttpResponse(uri, testConfig);
+        if (outer.getTestOutcome() == HttpResultOuter.TestOutcome.match
+                && !(requestContext.getFetchPolicy().isKeepBodiesOfMatches() && testConfig.getOptions().getAlsoAdd() == AlsoAdd.httpResponseAndBody)
+                && requestContext.getCoalescer() == null
+                && inner instanceof HttpResultInnerSuccess success) {
+            success.releaseBody();
+        }
+        timings.add(PhaseTimings.Phase.check, System.nanoTime() - start);
+        return outer;
     }
 
 }
@@ -7,5 +7,18 @@ import java.net.URI;
 
 public abstract class HttpResultInner {
 
+    // how many requests have been sent to obtain this result, including retries and hedges
+    // (set by the Retrying functions before the result is handed on, never changed after)
+
+    private int attempts = 1;
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
     public abstract @NotNull HttpResultOuter checkHttpResponse(@NotNull URI uri, @NotNull TestConfig testConfig);
 }
@@ -1,21 +1,40 @@
 package name.heavycarbon.url_access_checker.http;
 
 import name.heavycarbon.url_access_checker.building.TestConfig;
-import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
 
 public class HttpResultInnerFailure extends HttpResultInner {
 
-    public enum FailureType {io_exception, interrupt}
+    public enum FailureType {io_exception, interrupt, other_exception}
+
+    // ---
+    // What went wrong with the connection, as far as it matters for a retry (see RetryPolicy).
+    // "connection_reset" covers all the ways in which an established connection breaks,
+    // notably a pooled connection that the server has already closed. "deadline" is a
+    // timeout that happened because the run's Deadline passed (see HttpRequesting).
+    // ---
+
+    public enum FailureCause {connect_refused, connection_reset, timeout, deadline, other}
 
     private final @NotNull FailureType failureType;
+    private final @NotNull FailureCause failureCause;
     private final @NotNull String exceptionClass; // null if there has not been an exception
     private final @NotNull String msg; // message from the exception or a synthetic message
 
     public HttpResultInnerFailure(@NotNull FailureType failureType, @NotNull String exceptionClass, @NotNull String msg) {
+        this(failureType, FailureCause.other, exceptionClass, msg);
+    }
+
+    public HttpResultInnerFailure(@NotNull FailureType failureType, @NotNull FailureCause failureCause, @NotNull String exceptionClass, @NotNull String msg) {
         this.failureType = failureType;
+        this.failureCause = failureCause;
         this.exceptionClass = exceptionClass;
         this.msg = msg;
     }
@@ -32,19 +51,62 @@ public class HttpResultInnerFailure extends HttpResultInner {
         return failureType;
     }
 
+    public @NotNull FailureCause getFailureCause() {
+        return failureCause;
+    }
+
+    // ---
+    // java.net.http.HttpClient reports most of what can go wrong with a plain IOException,
+    // so besides the exception classes, the messages have to be looked at. The causes are
+    // looked at too, as the HttpClient likes to wrap.
+    // ---
+
+    public static @NotNull FailureCause classify(@NotNull Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            // HttpConnectTimeoutException is an HttpTimeoutException
+            if (t instanceof HttpTimeoutException || t instanceof SocketTimeoutException) {
+                return FailureCause.timeout;
+            }
+            if (t instanceof ConnectException) {
+                return FailureCause.connect_refused;
+            }
+            if (t instanceof EOFException) {
+                return FailureCause.connection_reset;
+            }
+            final String msg = t.getMessage();
+            if (msg != null && (msg.contains("Connection reset")
+                    || msg.contains("Broken pipe")
+                    || msg.contains("received no bytes") // "HTTP/1.1 header parser received no bytes"
+                    || msg.contains("EOF reached")
+                    || msg.contains("GOAWAY"))) {
+                return FailureCause.connection_reset;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return FailureCause.other;
+    }
+
     public @NotNull String stringify(boolean withFailureMsg) {
-        final StringBuilder buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, this.getClass().getName()); // TODO this is ugly printout
-        MyPrinting.joinIfNotEmpty(buf, "Failure type       : " + failureType);
-        MyPrinting.joinIfNotEmpty(buf, "Exception class    : " + exceptionClass);
+        return IndentingWriter.stringify(w -> render(w, withFailureMsg));
+    }
+
+    public void render(@NotNull IndentingWriter w, boolean withFailureMsg) {
+        w.line(this.getClass().getName()); // TODO this is ugly printout
+        w.line("Failure type       : " + failureType);
+        w.line("Failure cause      : " + failureCause);
+        w.line("Exception class    : " + exceptionClass);
         if (withFailureMsg) {
-            MyPrinting.joinIfNotEmpty(buf, "Message            : " + msg);
+            w.line("Message            : " + msg);
         }
-        return MyPrinting.makeString(buf);
     }
 
     @Override
     public @NotNull HttpResultOuter checkHttpResponse(@NotNull URI uri, @NotNull TestConfig testConfig) {
-        return new HttpResultOuter(HttpResultOuter.TestOutcome.request_failure, getMsg(), this);
+        final HttpResultOuter.TestOutcome outcome = (failureCause == FailureCause.deadline)
+                ? HttpResultOuter.TestOutcome.deadline_exceeded
+                : HttpResultOuter.TestOutcome.request_failure;
+        return new HttpResultOuter(outcome, getMsg(), this);
     }
 }
@@ -1,11 +1,13 @@
 package name.heavycarbon.url_access_checker.http;
 
 import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import name.heavycarbon.url_access_checker.printing.MyPrinting;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,10 +19,17 @@ public class HttpResultInnerSuccess extends HttpResultInner {
     private final HttpStatusCode httpStatusCode;
     @Nullable
     private final HttpResponse<String> httpResponse; // null if java.net.HttpClient didn't provide anything
+    @Nullable
+    private final BodyFetch bodyFetch; // null if the body was not obtained through a FetchingBodyHandler
 
     public HttpResultInnerSuccess(@NotNull HttpStatusCode httpStatusCode, @Nullable HttpResponse<String> httpResponse) {
+        this(httpStatusCode, httpResponse, null);
+    }
+
+    public HttpResultInnerSuccess(@NotNull HttpStatusCode httpStatusCode, @Nullable HttpResponse<String> httpResponse, @Nullable BodyFetch bodyFetch) {
         this.httpStatusCode = httpStatusCode;
         this.httpResponse = httpResponse;
+        this.bodyFetch = bodyFetch;
     }
 
     public @NotNull HttpStatusCode getHttpStatusCode() {
@@ -31,18 +40,56 @@ public class HttpResultInnerSuccess extends HttpResultInner {
         return httpResponse;
     }
 
+    public @Nullable BodyFetch getBodyFetch() {
+        return bodyFetch;
+    }
+
+    // null if there is no HttpResponse
+
+    public @Nullable HttpClient.Version getNegotiatedHttpVersion() {
+        return (httpResponse != null) ? httpResponse.version() : null;
+    }
+
+    // ---
+    // Another "more" tests check this result (see RequestCoalescer), each of them
+    // releases the body once.
+    // ---
+
+    void holdBody(int more) {
+        if (bodyFetch != null && bodyFetch.capture() != null) {
+            bodyFetch.capture().hold(more);
+        }
+    }
+
+    // ---
+    // Drop what has been kept of the body (its length and hash stay), once it is clear
+    // that it will not be printed, or once it has been printed (see CapturedBody).
+    // ---
+
+    public void releaseBody() {
+        if (bodyFetch != null && bodyFetch.capture() != null) {
+            bodyFetch.capture().release();
+        }
+    }
+
     public @NotNull String stringify(@NotNull AlsoAdd alsoAdd) {
-        final StringBuilder buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, this.getClass().getName()); // TODO this is ugly printout
-        MyPrinting.joinIfNotEmpty(buf, "HTTP status code   : '" + httpStatusCode.toStringWithText() + "'");
+        return IndentingWriter.stringify(w -> render(w, alsoAdd));
+    }
+
+    public void render(@NotNull IndentingWriter w, @NotNull AlsoAdd alsoAdd) {
+        w.line(this.getClass().getName()); // TODO this is ugly printout
+        w.line("HTTP status code   : '" + httpStatusCode.toStringWithText() + "'");
+        if (httpResponse != null) {
+            // the version actually negotiated with the server, which may differ from the one asked for
+            w.line("HTTP version       : " + HttpRequesting.toStringHttpVersion(httpResponse.version()));
+        }
         if (httpResponse != null && alsoAdd != AlsoAdd.nothing) {
-            MyPrinting.joinIfNotEmpty(buf, "HTTP Response");
+            w.line("HTTP Response");
             final var addBody = (alsoAdd == AlsoAdd.httpResponseAndBody);
-            final var str1 = HttpRequesting.buildTextOfResponse(httpResponse, addBody);
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
+            w.indent();
+            HttpRequesting.renderResponse(w, httpResponse, addBody, (bodyFetch != null) ? bodyFetch.capture() : null);
+            w.dedent();
         }
-        return MyPrinting.makeString(buf);
     }
 
     private record CheckBodyResponse(boolean ok, @NotNull List<String> failed) {
@@ -58,6 +105,16 @@ public class HttpResultInnerSuccess extends HttpResultInner {
         return new CheckBodyResponse(failed.isEmpty(), failed);
     }
 
+    // ---
+    // If the body has been scanned by a FetchingBodyHandler while it was being received,
+    // the result is already there (and the body may be incomplete, so we can't look at it).
+    // ---
+
+    private static CheckBodyResponse checkBody(@NotNull BodyMatcher.Scan bodyScan) {
+        final List<String> failed = bodyScan.getMissing();
+        return new CheckBodyResponse(failed.isEmpty(), failed);
+    }
+
     // If the exchange went well (any successful outcome including "moved" etc.):
     // HttpResultInnerSuccess(ok, non-null HttpStatusCode, non-null java.net.HttpResponse, "OK");
 
@@ -65,24 +122,33 @@ public class HttpResultInnerSuccess extends HttpResultInner {
         if (testConfig.isExpected(httpStatusCode)) {
             final boolean bodyShouldBeChecked = testConfig.getOptions().isBodyStringsSet();
             if (bodyShouldBeChecked) {
-                if (httpStatusCode == HttpStatusCode.forbidden) {
-                    // There is no body, there isn't even a http response, if the status code is "forbidden", so we can't check anything.
-                    assert httpResponse == null;
+                if (httpStatusCode == HttpStatusCode.forbidden && (httpResponse == null || httpResponse.statusCode() == 401)) {
+                    // Bad credentials. Either there isn't even a http response (the Authenticator gave up), or the
+                    // body is the server's "401 Unauthorized" page (preemptive authentication). Either way, the
+                    // body strings are not about that, so we can't check anything.
                     MyPrinting.logWarning("HTTP status code for '" + uri + "' is " + httpStatusCode + ", but 'options' carries body strings to check -- disregarding those");
                     return new HttpResultOuter(HttpResultOuter.TestOutcome.match, "HTTP status code matches", this);
                 } else {
                     assert httpResponse != null;
-                    final String body = httpResponse.body();
-                    assert body != null;
                     final List<String> bodyStrings = testConfig.getOptions().getBodyStrings();
                     assert bodyStrings != null;
-                    final CheckBodyResponse bodyRes = checkBody(body, bodyStrings);
+                    final BodyMatcher.Scan bodyScan = (bodyFetch != null) ? bodyFetch.scan() : null;
+                    final CheckBodyResponse bodyRes;
+                    if (bodyScan != null) {
+                        bodyRes = checkBody(bodyScan);
+                    } else {
+                        // not obtained through a FetchingBodyHandler, the whole body is in the HttpResponse
+                        final String body = httpResponse.body();
+                        assert body != null;
+                        bodyRes = checkBody(body, bodyStrings);
+                    }
                     if (bodyRes.ok()) {
                         final int count = testConfig.getOptions().getBodyStrings().size();
                         return new HttpResultOuter(HttpResultOuter.TestOutcome.match, "HTTP status code matches. Also body matches (looked for " + count + " substrings)", this);
                     } else {
                         final var offendStr = bodyRes.failed().stream().map(str -> "'" + str + "'").collect(Collectors.joining(","));
-                        return new HttpResultOuter(HttpResultOuter.TestOutcome.body_mismatch, "HTTP status code matches, but body does not match. Offending strings: " + offendStr, this);
+                        final String cutOffStr = (bodyFetch != null && bodyFetch.cutOff()) ? " (only the first " + bodyFetch.bytesReceived() + " bytes of the body were looked at)" : "";
+                        return new HttpResultOuter(HttpResultOuter.TestOutcome.body_mismatch, "HTTP status code matches, but body does not match. Offending strings: " + offendStr + cutOffStr, this);
                     }
                 }
             } else {
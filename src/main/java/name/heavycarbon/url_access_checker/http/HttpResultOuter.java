@@ -1,13 +1,14 @@
 package name.heavycarbon.url_access_checker.http;
 
-import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import org.jetbrains.annotations.NotNull;
 
 // "msg" is synthetic of the "msg" from "inner failure"
+// "deadline_exceeded" is a "request_failure" that happened because the run's Deadline passed
 
 public class HttpResultOuter {
 
-    public enum TestOutcome {match, http_status_mismatch, body_mismatch, request_failure}
+    public enum TestOutcome {match, http_status_mismatch, body_mismatch, request_failure, deadline_exceeded}
 
     private final @NotNull TestOutcome testOutcome;
     private final @NotNull String msg;
@@ -32,25 +33,24 @@ public class HttpResultOuter {
     }
 
     public @NotNull String stringify(@NotNull AlsoAdd alsoAdd) {
-        final var buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, "Test outcome : " + testOutcome);
-        MyPrinting.joinIfNotEmpty(buf, "Message      : " + msg); // this SHOULD already be printed at the topmost level
-        MyPrinting.joinIfNotEmpty(buf, "HTTP result, inner");
-        {
-            // here we actually cannot be fully object-oriented
-            final String str1;
-            if (httpResultInner instanceof HttpResultInnerSuccess success) {
-                str1 = success.stringify(alsoAdd);
-            } else if (httpResultInner instanceof HttpResultInnerFailure failure) {
-                final boolean withFailureMsg = true; // this SHOULD already be printed at the topmost level
-                str1 = failure.stringify(withFailureMsg);
-            } else {
-                throw new IllegalStateException("Program error");
-            }
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
+        return IndentingWriter.stringify(w -> render(w, alsoAdd));
+    }
+
+    public void render(@NotNull IndentingWriter w, @NotNull AlsoAdd alsoAdd) {
+        w.line("Test outcome : " + testOutcome);
+        w.line("Message      : " + msg); // this SHOULD already be printed at the topmost level
+        w.line("HTTP result, inner");
+        w.indent();
+        // here we actually cannot be fully object-oriented
+        if (httpResultInner instanceof HttpResultInnerSuccess success) {
+            success.render(w, alsoAdd);
+        } else if (httpResultInner instanceof HttpResultInnerFailure failure) {
+            final boolean withFailureMsg = true; // this SHOULD already be printed at the topmost level
+            failure.render(w, withFailureMsg);
+        } else {
+            throw new IllegalStateException("Program error");
         }
-        return MyPrinting.makeString(buf);
+        w.dedent();
     }
 
 }
@@ -37,12 +37,22 @@ public final class HttpStatusCode {
 
     private static Map<Integer, String> codeToTextMap;
     private static Map<Integer, String> codeToTextMapUnofficials;
-    private static Map<String, Integer> textToCodeMap;
 
-    // This map grows as we request new instances via valueOf().
-    // Access to it is synchronized in valueOf().
+    private final static int minCode = 100;
+    private final static int maxCode = 999;
 
-    private final static Map<Integer, HttpStatusCode> canonicals = new HashMap<>();
+    // All the canonical instances, created upfront, indexed by "code - minCode".
+    // The array is never modified after class initialization, so reading it needs no locking.
+
+    private final static HttpStatusCode[] canonicals = new HttpStatusCode[maxCode - minCode + 1];
+
+    // An open-addressing hash table (linear probing) from the normalized text of the
+    // official codes (lowercase, no blanks) to the Optional that fromText() returns.
+    // A lookup normalizes and hashes the text on the fly, so it allocates nothing.
+    // The size is a power of 2 and at least twice the number of entries.
+
+    private static String[] textKeys;
+    private static Optional<HttpStatusCode>[] textValues;
 
     static {
         Map<Integer, String> map = new HashMap<>();
@@ -130,13 +140,42 @@ public final class HttpStatusCode {
     }
 
     static {
-        // Note that we don't put the "unofficials" into the reverse map
-        Map<String, Integer> reverseMap = new HashMap<>();
-        HttpStatusCode.codeToTextMap.forEach((key, value) -> {
-            var old = reverseMap.put(value.toLowerCase().replace(" ", ""), key);
-            assert old == null;
+        for (int code = minCode; code <= maxCode; code++) {
+            canonicals[code - minCode] = new HttpStatusCode(code);
+        }
+    }
+
+    private static @NotNull String normalize(@NotNull String text) {
+        final var buf = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch != ' ') {
+                buf.append(Character.toLowerCase(ch));
+            }
+        }
+        return buf.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void buildTextTable() {
+        // Note that we don't put the "unofficials" into the table
+        final int size = Integer.highestOneBit(codeToTextMap.size() * 2) * 2;
+        textKeys = new String[size];
+        textValues = (Optional<HttpStatusCode>[]) new Optional<?>[size];
+        codeToTextMap.forEach((code, text) -> {
+            final var key = normalize(text);
+            int slot = hashNormalized(key) & (size - 1);
+            while (textKeys[slot] != null) {
+                assert !textKeys[slot].equals(key);
+                slot = (slot + 1) & (size - 1);
+            }
+            textKeys[slot] = key;
+            textValues[slot] = Optional.of(canonicals[code - minCode]);
         });
-        HttpStatusCode.textToCodeMap = Collections.unmodifiableMap(reverseMap);
+    }
+
+    static {
+        buildTextTable();
     }
 
     // ---
@@ -160,9 +199,6 @@ public final class HttpStatusCode {
     // ---
 
     private HttpStatusCode(int code) {
-        if (code < 100 || code > 999) {
-            throw new IllegalArgumentException("Code " + code + " is out of range [100,999]");
-        }
         this.code = code;
         this.hashCode = Objects.hashCode(code);
         this.asString = String.valueOf(code);
@@ -175,6 +211,10 @@ public final class HttpStatusCode {
         }
     }
 
+    public int getCode() {
+        return code;
+    }
+
     // ---
     // Is there a text description for this instance?
     // ---
@@ -224,6 +264,36 @@ public final class HttpStatusCode {
         return asStringWithText;
     }
 
+    // ---
+    // Hash of a text as it is after normalization (lowercase, blanks removed), computed
+    // without building the normalized text. The keys of the table are already normalized.
+    // ---
+
+    private static int hashNormalized(@NotNull CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch != ' ') {
+                hash = 31 * hash + Character.toLowerCase(ch);
+            }
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equalsNormalized(@NotNull String key, @NotNull String text) {
+        int k = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch != ' ') {
+                if (k == key.length() || key.charAt(k) != Character.toLowerCase(ch)) {
+                    return false;
+                }
+                k++;
+            }
+        }
+        return k == key.length();
+    }
+
     // ---
     // Try to find an official code (the unofficial code are disregarded)
     // that corresponds to the passed "desc" (the description in english)
@@ -233,32 +303,26 @@ public final class HttpStatusCode {
     public static Optional<HttpStatusCode> fromText(@Nullable String desc) {
         if (desc == null) {
             return Optional.empty();
-        } else {
-            final String lookFor = desc.toLowerCase().replace(" ", "");
-            final Integer res = textToCodeMap.get(lookFor);
-            if (res == null) {
-                return Optional.empty();
-            } else {
-                return Optional.of(fromCode(res)); // a new instance may be created
+        }
+        final int mask = textKeys.length - 1;
+        int slot = hashNormalized(desc) & mask;
+        while (textKeys[slot] != null) {
+            if (equalsNormalized(textKeys[slot], desc)) {
+                return textValues[slot];
             }
+            slot = (slot + 1) & mask;
         }
+        return Optional.empty();
     }
 
     // ---
-    // Obtain a canonical instance of HttpStatusCode.
-    // If none exists for that code, it is created.
+    // Obtain the canonical instance of HttpStatusCode.
     // ---
 
     public static @NotNull HttpStatusCode fromCode(int code) {
-        synchronized (canonicals) {
-            final HttpStatusCode res = canonicals.get(code);
-            if (res != null) {
-                return res;
-            } else {
-                final HttpStatusCode res2 = new HttpStatusCode(code);
-                canonicals.put(code, res2);
-                return res2;
-            }
+        if (code < minCode || code > maxCode) {
+            throw new IllegalArgumentException("Code " + code + " is out of range [" + minCode + "," + maxCode + "]");
         }
+        return canonicals[code - minCode];
     }
 }
@@ -0,0 +1,71 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+// ---
+// How long the phases of a single test took, in nanoseconds, measured as the test runs.
+//
+// java.net.http.HttpClient does not tell when the connection has been established or
+// when the TLS handshake is done, so "headers" is everything from handing the request to
+// the HttpClient to having the response headers: connecting (if no pooled connection is
+// available), the TLS handshake, sending the request and waiting for the first byte.
+// "body" is the transfer of (as much of) the body (as wanted).
+//
+// A test whose request has been coalesced with an earlier identical request books the
+// time it waited for the shared response under "headers".
+//
+// The phases of a test are recorded one after the other, possibly on different threads,
+// but each handover goes through a CompletableFuture or a thread start, so no locking
+// is needed.
+// ---
+
+public class PhaseTimings {
+
+    public enum Phase {uri_build, client_acquire, headers, body, check}
+
+    private final long[] nanos = new long[Phase.values().length];
+
+    public void add(@NotNull Phase phase, long nanos) {
+        this.nanos[phase.ordinal()] += nanos;
+    }
+
+    public void addAll(@NotNull PhaseTimings other) {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] += other.nanos[i];
+        }
+    }
+
+    public long get(@NotNull Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long x : nanos) {
+            total += x;
+        }
+        return total;
+    }
+
+    public static @NotNull String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringify() {
+        final var buf = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (!buf.isEmpty()) {
+                buf.append(", ");
+            }
+            buf.append(phase).append(" ").append(toMillis(get(phase)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// ---
+// A "single-flight" layer: the test suites often contain the same exchange several times
+// (same URI, same credentials) under different expectations. The first request for an
+// exchange goes out to the network, all the others made while it is in flight get the
+// same HttpResultInner, which is then checked against each TestConfig independently.
+//
+// Two requests are the same exchange if they agree on everything that influences what
+// is sent and what is kept of the response: the URI (which includes the scheme), the
+// credentials, and the FetchStrategy (which gives the method) with the body strings looked
+// for while receiving the body.
+//
+// An exchange is forgotten as soon as its result is in, so a later request for the same
+// exchange goes out again. Only the exchanges in flight are kept, not every response of
+// the run. Thus it only saves requests when identical tests run concurrently (with
+// "--parallelism" or the async engine). Can be used concurrently.
+//
+// The tests that share an exchange are counted, and what has been kept of the body holds
+// one hold per test, so that it is released after the last of them (see CapturedBody).
+// ---
+
+public class RequestCoalescer {
+
+    private record ExchangeKey(@NotNull URI uri,
+                               @NotNull TestConfig.WhatCreds what,
+                               @Nullable Credentials creds,
+                               @NotNull FetchStrategy strategy,
+                               @Nullable List<String> bodyStrings) {
+    }
+
+    // an exchange in flight and the number of tests waiting for it, the one performing it included
+
+    private record InFlight(@NotNull CompletableFuture<HttpResultInner> future, int tests) {
+    }
+
+    private final @NotNull Map<ExchangeKey, InFlight> exchanges = new ConcurrentHashMap<>();
+    private final @NotNull AtomicInteger requestsSaved = new AtomicInteger();
+
+    private static @NotNull ExchangeKey buildKey(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull FetchStrategy strategy) {
+        final TestConfig.CredData credData = testConfig.getCredData();
+        return new ExchangeKey(uri, credData.what(), credData.creds(), strategy, testConfig.getOptions().getBodyStrings());
+    }
+
+    // ---
+    // Returns the future result of the exchange, calling "performer" only if the exchange
+    // is not in flight already. The "performer" is called outside of any lock. Joining and
+    // forgetting an exchange are atomic with respect to each other (compute() locks the
+    // entry), so the number of tests is final once the exchange is forgotten.
+    // Like the results of HttpRequesting, the returned future never completes exceptionally:
+    // if "performer" throws, or its future fails, all the tests get an HttpResultInnerFailure.
+    // ---
+
+    public @NotNull CompletableFuture<HttpResultInner> coalesce(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull FetchStrategy strategy, @NotNull Supplier<CompletableFuture<HttpResultInner>> performer) {
+        final ExchangeKey key = buildKey(uri, testConfig, strategy);
+        final var ours = new CompletableFuture<HttpResultInner>();
+        final InFlight joined = exchanges.compute(key, (k, inFlight) -> (inFlight == null) ? new InFlight(ours, 1) : new InFlight(inFlight.future(), inFlight.tests() + 1));
+        assert joined != null;
+        if (joined.future() != ours) {
+            requestsSaved.incrementAndGet();
+            return joined.future();
+        }
+        try {
+            performer.get().whenComplete((inner, throwable) -> {
+                final int tests = forget(key, ours);
+                if (throwable == null) {
+                    if (tests > 1 && inner instanceof HttpResultInnerSuccess success) {
+                        success.holdBody(tests - 1);
+                    }
+                    ours.complete(inner);
+                } else {
+                    ours.complete(HttpRequesting.fromThrowable(throwable));
+                }
+            });
+        } catch (RuntimeException e) {
+            forget(key, ours);
+            ours.complete(HttpRequesting.fromThrowable(e));
+        }
+        return ours;
+    }
+
+    // ---
+    // Whoever asks from now on performs the exchange again. Returns the number of tests
+    // that got the exchange.
+    // ---
+
+    private int forget(@NotNull ExchangeKey key, @NotNull CompletableFuture<HttpResultInner> ours) {
+        final int[] tests = {1};
+        exchanges.computeIfPresent(key, (k, inFlight) -> {
+            if (inFlight.future() != ours) {
+                return inFlight;
+            }
+            tests[0] = inFlight.tests();
+            return null;
+        });
+        return tests[0];
+    }
+
+    public int getRequestsSaved() {
+        return requestsSaved.get();
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringifyStatistics() {
+        return String.format("%-24s : %d", "Requests saved", requestsSaved.get());
+    }
+}
@@ -0,0 +1,95 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// ---
+// Everything that the HttpRequesting functions need beyond the TestConfig and that lives as
+// long as the run: the shared HttpClients, the policy on how much to fetch, the coalescer
+// of identical requests (if requested), the RetryPolicy, the Deadline of the run, and statistics.
+// Closing the context closes the HttpClients.
+// ---
+
+public class RequestContext implements AutoCloseable {
+
+    private final @NotNull HttpClientRegistry clientRegistry;
+    private final @NotNull FetchPolicy fetchPolicy;
+    private final @NotNull FetchStatistics fetchStatistics = new FetchStatistics();
+    private final @Nullable RequestCoalescer coalescer; // null if identical requests are not coalesced
+    private final @NotNull RetryPolicy retryPolicy;
+    private final @NotNull Deadline deadline;
+    private final boolean logAccesses; // print a line for every request sent
+
+    public RequestContext(@NotNull HttpClientRegistry clientRegistry, @NotNull FetchPolicy fetchPolicy, boolean coalesceRequests) {
+        this(clientRegistry, fetchPolicy, coalesceRequests, true);
+    }
+
+    public RequestContext(@NotNull HttpClientRegistry clientRegistry, @NotNull FetchPolicy fetchPolicy, boolean coalesceRequests, boolean logAccesses) {
+        this(clientRegistry, fetchPolicy, coalesceRequests, logAccesses, RetryPolicy.none());
+    }
+
+    public RequestContext(@NotNull HttpClientRegistry clientRegistry, @NotNull FetchPolicy fetchPolicy, boolean coalesceRequests, boolean logAccesses, @NotNull RetryPolicy retryPolicy) {
+        this(clientRegistry, fetchPolicy, coalesceRequests, logAccesses, retryPolicy, Deadline.none());
+    }
+
+    public RequestContext(@NotNull HttpClientRegistry clientRegistry, @NotNull FetchPolicy fetchPolicy, boolean coalesceRequests, boolean logAccesses, @NotNull RetryPolicy retryPolicy, @NotNull Deadline deadline) {
+        this.clientRegistry = clientRegistry;
+        this.fetchPolicy = fetchPolicy;
+        this.coalescer = coalesceRequests ? new RequestCoalescer() : null;
+        this.logAccesses = logAccesses;
+        this.retryPolicy = retryPolicy;
+        this.deadline = deadline;
+    }
+
+    public boolean isLogAccesses() {
+        return logAccesses;
+    }
+
+    public @NotNull HttpClientRegistry getClientRegistry() {
+        return clientRegistry;
+    }
+
+    public @NotNull FetchPolicy getFetchPolicy() {
+        return fetchPolicy;
+    }
+
+    public @NotNull FetchStatistics getFetchStatistics() {
+        return fetchStatistics;
+    }
+
+    public @Nullable RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    public @NotNull RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public @NotNull Deadline getDeadline() {
+        return deadline;
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringifyStatistics() {
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, clientRegistry.stringifyStatistics());
+        MyPrinting.joinIfNotEmpty(buf, fetchStatistics.stringify());
+        if (coalescer != null) {
+            MyPrinting.joinIfNotEmpty(buf, coalescer.stringifyStatistics());
+        }
+        if (retryPolicy.isActive()) {
+            MyPrinting.joinIfNotEmpty(buf, retryPolicy.stringifyStatistics());
+        }
+        return MyPrinting.makeString(buf);
+    }
+
+    @Override
+    public void close() {
+        clientRegistry.close();
+    }
+}
@@ -0,0 +1,188 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.http.HttpResultInnerFailure.FailureCause;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ---
+// Which failed requests are sent again, and when a slow request gets a "hedge", a
+// duplicate that races it. The tests only GET or HEAD, so sending a request twice
+// does no harm. Only failures that say nothing about the page are retried, at most
+// "maxRetries" times per test:
+//
+// connect_refused  : nobody listens, maybe Apache is restarting; retried after a backoff that doubles
+// connection_reset : the connection broke, typically a pooled connection that the server had
+//                    already closed; retried at once, the HttpClient opens a new connection
+// timeout          : the request stalled; retried at once, the timeout has been waited for already
+// deadline, other  : not retried
+//
+// With "hedge", once a request has been waiting longer than the 95th percentile of the
+// latencies observed for its machine (over the last WINDOW answers, once there are at least
+// MIN_SAMPLES), a duplicate is sent. The first answer wins and the other request is cancelled.
+// About one request in twenty thus gets a hedge, which costs that many more requests but
+// cuts off the tail of the latencies. As a machine that slows down across the board would
+// get a hedge for most requests (making things worse), hedges are only sent as long as
+// they stay below MAX_HEDGE_SHARE of the requests.
+//
+// Lives as long as the run, counting retries and hedges. Can be used concurrently.
+// ---
+
+public class RetryPolicy {
+
+    static final int WINDOW = 256;
+    static final int MIN_SAMPLES = 20;
+    static final double MAX_HEDGE_SHARE = 0.1;
+    static final Duration FIRST_BACKOFF = Duration.ofMillis(100);
+
+    // the latencies of the last answers of a machine, oldest overwritten first
+
+    private static class Latencies {
+
+        private final long[] nanos = new long[WINDOW];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void add(long latencyNanos) {
+            nanos[next] = latencyNanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        }
+
+        synchronized long p95() {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            final long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * count) - 1];
+        }
+    }
+
+    private final int maxRetries;
+    private final boolean hedge;
+    private final @NotNull Map<MachineName, Latencies> latencies = new ConcurrentHashMap<>();
+    private final @NotNull Map<FailureCause, AtomicLong> retryCounts = new EnumMap<>(FailureCause.class);
+    private final @NotNull AtomicLong hedgeable = new AtomicLong(); // requests that might have got a hedge
+    private final @NotNull AtomicLong hedgesSent = new AtomicLong();
+    private final @NotNull AtomicLong hedgesWon = new AtomicLong();
+
+    public RetryPolicy(int maxRetries, boolean hedge) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("The 'max retries' must not be negative, but is " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        this.hedge = hedge;
+        for (FailureCause cause : FailureCause.values()) {
+            retryCounts.put(cause, new AtomicLong());
+        }
+    }
+
+    // neither retries nor hedges: each test sends its request once, as it always did
+
+    public static @NotNull RetryPolicy none() {
+        return new RetryPolicy(0, false);
+    }
+
+    public boolean isActive() {
+        return maxRetries > 0 || hedge;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public boolean isHedge() {
+        return hedge;
+    }
+
+    // ---
+    // How long to wait before sending a request again after it failed with "cause",
+    // "retriesSoFar" retries having already been made. Null if it is not sent again.
+    // ---
+
+    public @Nullable Duration retryDelay(@NotNull FailureCause cause, int retriesSoFar) {
+        if (retriesSoFar >= maxRetries) {
+            return null;
+        }
+        return switch (cause) {
+            case connect_refused -> FIRST_BACKOFF.multipliedBy(1L << Math.min(retriesSoFar, 10));
+            case connection_reset, timeout -> Duration.ZERO;
+            case deadline, other -> null;
+        };
+    }
+
+    // the time to the response headers of a request that got an answer
+
+    public void recordLatency(@NotNull MachineName machineName, long latencyNanos) {
+        if (hedge) {
+            latencies.computeIfAbsent(machineName, mn -> new Latencies()).add(latencyNanos);
+        }
+    }
+
+    // ---
+    // How long to wait for an answer before sending a hedge, null if no hedge is sent.
+    // Called once for each request that might get a hedge.
+    // ---
+
+    public @Nullable Duration hedgeDelay(@NotNull MachineName machineName) {
+        if (!hedge) {
+            return null;
+        }
+        hedgeable.incrementAndGet();
+        final Latencies machineLatencies = latencies.get(machineName);
+        final long p95 = (machineLatencies != null) ? machineLatencies.p95() : -1;
+        return (p95 >= 0) ? Duration.ofNanos(p95) : null;
+    }
+
+    void recordRetry(@NotNull FailureCause cause) {
+        retryCounts.get(cause).incrementAndGet();
+    }
+
+    // ---
+    // Called once the hedge delay is over: true if the hedge may be sent, in which case
+    // it is counted as sent.
+    // ---
+
+    boolean tryStartHedge() {
+        while (true) {
+            final long sent = hedgesSent.get();
+            if (sent + 1 > MAX_HEDGE_SHARE * hedgeable.get()) {
+                return false;
+            }
+            if (hedgesSent.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void recordHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public @NotNull String stringifyStatistics() {
+        final var buf = new StringBuilder();
+        for (FailureCause cause : FailureCause.values()) {
+            if (cause == FailureCause.deadline || cause == FailureCause.other) {
+                continue; // never retried
+            }
+            MyPrinting.joinIfNotEmpty(buf, String.format("%-26s : %d", "Retries '" + cause + "'", retryCounts.get(cause).get()));
+        }
+        MyPrinting.joinIfNotEmpty(buf, "Hedges sent                : " + hedgesSent.get());
+        MyPrinting.joinIfNotEmpty(buf, "Hedges answering first     : " + hedgesWon.get());
+        return MyPrinting.makeString(buf);
+    }
+}
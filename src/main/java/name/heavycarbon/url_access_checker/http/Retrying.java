@@ -0,0 +1,248 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+ Sending the request of a test again if it failed in a way that a retry may fix, and
+ racing a slow request with a hedge, as the RetryPolicy of the RequestContext says.
+
+ > attempt 1 --(connect_refused: backoff)--> attempt 2 --(connection_reset: at once)--> attempt 3 --> result
+ >     |
+ >     +-- no answer after the machine's p95 latency --> hedge, the first answer wins, the other is cancelled
+
+ An attempt is a single request, or a request and its hedge. The test's PhaseTimings get
+ the phases of all the attempts (but not the backoffs), so a failed attempt shows up as
+ time spent. Of a race, only the winner's phases are added, the hedge's "headers" including
+ the time it waited before being sent. The number of requests sent goes into the
+ "attempts" of the HttpResultInner.
+ */
+
+public abstract class Retrying {
+
+    private record Attempt(@NotNull HttpResultInner inner, int requestsSent) {
+    }
+
+    // ---
+    // The delay before the next attempt, null if there is none. Counts the retry.
+    // A backoff does not outlast the run's Deadline, after which the next attempt
+    // ends at once (see HttpRequesting).
+    // ---
+
+    private static @Nullable Duration retryDelay(@NotNull RequestContext requestContext, @NotNull HttpResultInner inner, int retriesSoFar) {
+        if (inner instanceof HttpResultInnerFailure failure && !requestContext.getDeadline().isExpired()) {
+            final RetryPolicy policy = requestContext.getRetryPolicy();
+            final Duration delay = policy.retryDelay(failure.getFailureCause(), retriesSoFar);
+            if (delay != null) {
+                policy.recordRetry(failure.getFailureCause());
+                return delay.isZero() ? delay : requestContext.getDeadline().cap(delay);
+            }
+        }
+        return null;
+    }
+
+    // ---
+    // The blocking variant, for the TestSuiteRunner. The thread sleeps through the backoffs
+    // and, if there are hedges, waits for the race.
+    // ---
+
+    static @NotNull HttpResultInner perform(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final RetryPolicy policy = requestContext.getRetryPolicy();
+        int requestsSent = 0;
+        int retries = 0;
+        while (true) {
+            final Attempt attempt;
+            if (policy.isHedge()) {
+                attempt = raceAsync(uri, testConfig, requestContext, timings).join();
+            } else {
+                attempt = new Attempt(HttpRequesting.obtainHttpClientAndPerformRequest(uri, testConfig, requestContext, timings), 1);
+            }
+            requestsSent += attempt.requestsSent();
+            final Duration delay = retryDelay(requestContext, attempt.inner(), retries);
+            if (delay == null) {
+                attempt.inner().setAttempts(requestsSent);
+                return attempt.inner();
+            }
+            if (!delay.isZero()) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    // Having been interrupted, set interrupt flag again, and report what we have
+                    Thread.currentThread().interrupt();
+                    attempt.inner().setAttempts(requestsSent);
+                    return attempt.inner();
+                }
+            }
+            retries++;
+        }
+    }
+
+    // ---
+    // The non-blocking variant, for the AsyncTestSuiteRunner. The backoffs are waited out
+    // with a delayed executor. The returned CompletableFuture never completes exceptionally.
+    // ---
+
+    static @NotNull CompletableFuture<HttpResultInner> performAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        return performAsync(uri, testConfig, requestContext, timings, 0, 0);
+    }
+
+    private static @NotNull CompletableFuture<HttpResultInner> performAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings, int retries, int requestsSentBefore) {
+        final RetryPolicy policy = requestContext.getRetryPolicy();
+        final CompletableFuture<Attempt> attemptFuture;
+        if (policy.isHedge()) {
+            attemptFuture = raceAsync(uri, testConfig, requestContext, timings);
+        } else {
+            attemptFuture = HttpRequesting.startAsyncExchange(uri, testConfig, requestContext, timings).result().thenApply(inner -> new Attempt(inner, 1));
+        }
+        return attemptFuture.thenCompose(attempt -> {
+            final int requestsSent = requestsSentBefore + attempt.requestsSent();
+            final Duration delay = retryDelay(requestContext, attempt.inner(), retries);
+            if (delay == null) {
+                attempt.inner().setAttempts(requestsSent);
+                return CompletableFuture.completedFuture(attempt.inner());
+            }
+            if (delay.isZero()) {
+                return performAsync(uri, testConfig, requestContext, timings, retries + 1, requestsSent);
+            }
+            return CompletableFuture.runAsync(() -> {
+            }, CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS)).thenCompose(ignored ->
+                    performAsync(uri, testConfig, requestContext, timings, retries + 1, requestsSent));
+        });
+    }
+
+    // ---
+    // A request and, if it takes longer than the machine's p95 latency, its hedge. The
+    // first answer wins; a failure only wins if the other request fails too (or has not
+    // been sent). All the bookkeeping happens while holding the lock on the Race, the
+    // requests are started and cancelled outside it. The race is "decided" under the lock,
+    // as cancelling the loser may complete it (and call onDone()) right away.
+    // ---
+
+    private static class Race {
+
+        private final @NotNull URI uri;
+        private final @NotNull TestConfig testConfig;
+        private final @NotNull RequestContext requestContext;
+        private final @NotNull PhaseTimings timings;
+        private final @NotNull CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private HttpRequesting.AsyncExchange primary;
+        private @Nullable HttpRequesting.AsyncExchange hedge; // null until sent
+        private boolean hedgeSent = false;
+        private boolean decided = false;
+        private int running = 0;
+        private @Nullable HttpResultInner firstFailure = null;
+
+        Race(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+            this.uri = uri;
+            this.testConfig = testConfig;
+            this.requestContext = requestContext;
+            this.timings = timings;
+        }
+
+        void start(@NotNull Duration hedgeDelay) {
+            final var primaryTimings = new PhaseTimings();
+            synchronized (this) {
+                running++;
+            }
+            final HttpRequesting.AsyncExchange exchange = HttpRequesting.startAsyncExchange(uri, testConfig, requestContext, primaryTimings);
+            synchronized (this) {
+                primary = exchange;
+            }
+            exchange.result().thenAccept(inner -> onDone(false, inner, primaryTimings, 0));
+            CompletableFuture.delayedExecutor(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS).execute(this::sendHedge);
+        }
+
+        private void sendHedge() {
+            final long offset;
+            synchronized (this) {
+                if (decided || requestContext.getDeadline().isExpired() || !requestContext.getRetryPolicy().tryStartHedge()) {
+                    return;
+                }
+                hedgeSent = true;
+                running++;
+                offset = System.nanoTime() - startNanos;
+            }
+            final var hedgeTimings = new PhaseTimings();
+            final HttpRequesting.AsyncExchange exchange = HttpRequesting.startAsyncExchange(uri, testConfig, requestContext, hedgeTimings);
+            final boolean tooLate;
+            synchronized (this) {
+                hedge = exchange;
+                tooLate = decided;
+            }
+            if (tooLate) {
+                exchange.cancel();
+            }
+            exchange.result().thenAccept(inner -> onDone(true, inner, hedgeTimings, offset));
+        }
+
+        private void onDone(boolean isHedge, @NotNull HttpResultInner inner, @NotNull PhaseTimings attemptTimings, long offset) {
+            final HttpRequesting.AsyncExchange loser;
+            final HttpResultInner result;
+            final boolean withHedge;
+            synchronized (this) {
+                running--;
+                if (decided) {
+                    // the loser, possibly cancelled: what it kept of a body is never looked at
+                    if (inner instanceof HttpResultInnerSuccess success) {
+                        success.releaseBody();
+                    }
+                    return;
+                }
+                if (inner instanceof HttpResultInnerFailure && running > 0) {
+                    // the other request may still get an answer
+                    if (firstFailure == null) {
+                        firstFailure = inner;
+                    }
+                    return;
+                }
+                decided = true;
+                result = (inner instanceof HttpResultInnerFailure && firstFailure != null) ? firstFailure : inner;
+                loser = isHedge ? primary : hedge;
+                withHedge = hedgeSent;
+            }
+            if (loser != null) {
+                loser.cancel();
+            }
+            timings.addAll(attemptTimings);
+            timings.add(PhaseTimings.Phase.headers, offset);
+            final RetryPolicy policy = requestContext.getRetryPolicy();
+            if (withHedge && isHedge) {
+                policy.recordHedgeWon();
+            }
+            if (result instanceof HttpResultInnerSuccess) {
+                // as seen by the test, so that answers that needed a hedge count as slow
+                policy.recordLatency(testConfig.getEndpoint().machineName(), offset + attemptTimings.get(PhaseTimings.Phase.headers));
+            }
+            winner.complete(new Attempt(result, withHedge ? 2 : 1));
+        }
+    }
+
+    private static @NotNull CompletableFuture<Attempt> raceAsync(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull RequestContext requestContext, @NotNull PhaseTimings timings) {
+        final RetryPolicy policy = requestContext.getRetryPolicy();
+        final MachineName machineName = testConfig.getEndpoint().machineName();
+        final Duration hedgeDelay = policy.hedgeDelay(machineName);
+        if (hedgeDelay == null) {
+            // too few answers so far to know what "slow" is for this machine
+            final var attemptTimings = new PhaseTimings();
+            return HttpRequesting.startAsyncExchange(uri, testConfig, requestContext, attemptTimings).result().thenApply(inner -> {
+                timings.addAll(attemptTimings);
+                if (inner instanceof HttpResultInnerSuccess) {
+                    policy.recordLatency(machineName, attemptTimings.get(PhaseTimings.Phase.headers));
+                }
+                return new Attempt(inner, 1);
+            });
+        }
+        final var race = new Race(uri, testConfig, requestContext, timings);
+        race.start(hedgeDelay);
+        return race.winner;
+    }
+}
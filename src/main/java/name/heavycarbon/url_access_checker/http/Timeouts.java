@@ -0,0 +1,38 @@
+package name.heavycarbon.url_access_checker.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+// ---
+// How long each phase of a request may take:
+//
+// connect  : establishing the connection (including the TLS handshake), set on the HttpClient
+// headers  : from sending the request to having the response headers (connecting included),
+//            set on each HttpRequest; the HttpClient does not apply it to the body
+// bodyIdle : how long the body may stall, i.e. the longest time without receiving a byte,
+//            watched by the FetchingBodyHandler; a body that keeps trickling in is not cut
+//
+// A request that runs into any of them fails with an HttpTimeoutException.
+// ---
+
+public record Timeouts(@NotNull Duration connect, @NotNull Duration headers, @NotNull Duration bodyIdle) {
+
+    public Timeouts {
+        check("connect", connect);
+        check("headers", headers);
+        check("body idle", bodyIdle);
+    }
+
+    private static void check(@NotNull String what, @NotNull Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("The '" + what + "' timeout must be positive, but is " + timeout.toMillis() + " ms");
+        }
+    }
+
+    // what has always been used: 3 seconds for connecting and for the headers, and as the body idle time
+
+    public static @NotNull Timeouts defaults() {
+        return new Timeouts(Duration.ofSeconds(3), Duration.ofSeconds(3), Duration.ofSeconds(3));
+    }
+}
@@ -0,0 +1,422 @@
+package name.heavycarbon.url_access_checker.http;
+
+import name.heavycarbon.url_access_checker.sidejobs.LoadJavaTrustStore;
+import name.heavycarbon.url_access_checker.sidejobs.LoadTrustStoreResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/*
+
+ The one SSLContext that all the HttpClients of a run share, so that a TLS session
+ negotiated on one connection is resumed ("abbreviated handshake") on the next connection
+ to the same machine, even if that connection belongs to another HttpClient.
+
+ > HttpClient --> SSLContext (counting) --> SSLEngine (counting) --> JDK's SSLEngine
+ >                     |                                                  |
+ >                     +-- client session cache                           +-- X509ExtendedTrustManager (counting)
+ >                                                                             built once from the trust store
+
+ The trust store is the one the JDK's default SSLContext would use, loaded from disk and
+ indexed only once per JVM (see LoadJavaTrustStore). If it cannot be loaded, the
+ TrustManagerFactory falls back to its own default.
+
+ Full and resumed handshakes are told apart by the trust manager: the server's certificate
+ chain is only checked in a full handshake. The SSLEngine marks the end of a handshake
+ (when "wrap" or "unwrap" says "FINISHED") and counts it as "full" if the chain has been
+ checked on that engine, as "resumed" otherwise.
+ */
+
+public class TlsContext {
+
+    // How many client sessions are kept for resumption, and for how long (seconds).
+    // Servers usually forget their sessions well before this.
+
+    static final int SESSION_CACHE_SIZE = 4096;
+    static final int SESSION_TIMEOUT_SECONDS = 3600;
+
+    private final @NotNull SSLContext sslContext;
+    private final boolean trustStoreLoaded;
+
+    // the JDK's SSLEngines that have checked a server's certificate chain since their handshake began
+
+    private final @NotNull Set<SSLEngine> chainChecked = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final @NotNull AtomicInteger fullHandshakes = new AtomicInteger();
+    private final @NotNull AtomicInteger resumedHandshakes = new AtomicInteger();
+
+    public TlsContext() {
+        final LoadTrustStoreResult loadResult = LoadJavaTrustStore.loadDefaultTrustStore();
+        this.trustStoreLoaded = loadResult.ok();
+        try {
+            final var factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(loadResult.trustStore()); // null selects the factory's own default
+            final var inner = SSLContext.getInstance("TLS");
+            inner.init(null, new TrustManager[]{new CountingTrustManager(findX509TrustManager(factory))}, null);
+            inner.getClientSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+            inner.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            this.sslContext = new CountingSslContext(new CountingSslContextSpi(inner), inner);
+        } catch (GeneralSecurityException exe) {
+            // the JDK always has "TLS" and a default TrustManagerFactory
+            throw new IllegalStateException("Could not build the SSLContext", exe);
+        }
+    }
+
+    private static @NotNull X509ExtendedTrustManager findX509TrustManager(@NotNull TrustManagerFactory factory) {
+        for (TrustManager tm : factory.getTrustManagers()) {
+            if (tm instanceof X509ExtendedTrustManager x509tm) {
+                return x509tm;
+            }
+        }
+        throw new IllegalStateException("The TrustManagerFactory did not yield an X509ExtendedTrustManager");
+    }
+
+    public @NotNull SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public boolean isTrustStoreLoaded() {
+        return trustStoreLoaded;
+    }
+
+    public int getFullHandshakes() {
+        return fullHandshakes.get();
+    }
+
+    public int getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
+    private void onHandshakeFinished(@NotNull SSLEngine inner) {
+        if (chainChecked.remove(inner)) {
+            fullHandshakes.incrementAndGet();
+        } else {
+            resumedHandshakes.incrementAndGet();
+        }
+    }
+
+    // ---
+    // Checks as the JDK's trust manager does, remembering the SSLEngine that asked.
+    // Only the server side matters here, we do not present client certificates.
+    // ---
+
+    private class CountingTrustManager extends X509ExtendedTrustManager {
+
+        private final @NotNull X509ExtendedTrustManager delegate;
+
+        CountingTrustManager(@NotNull X509ExtendedTrustManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            if (engine != null) {
+                chainChecked.add(engine);
+            }
+            delegate.checkServerTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            delegate.checkServerTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+    }
+
+    // ---
+    // The SSLContext handed to the HttpClients: the inner SSLContext, except that its
+    // SSLEngines are wrapped in CountingSslEngines. It is initialized already.
+    // ---
+
+    private static class CountingSslContext extends SSLContext {
+
+        CountingSslContext(@NotNull SSLContextSpi spi, @NotNull SSLContext inner) {
+            super(spi, inner.getProvider(), inner.getProtocol());
+        }
+    }
+
+    private class CountingSslContextSpi extends SSLContextSpi {
+
+        private final @NotNull SSLContext inner;
+
+        CountingSslContextSpi(@NotNull SSLContext inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+            throw new KeyManagementException("This SSLContext has been initialized already");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return inner.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return inner.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return new CountingSslEngine(inner.createSSLEngine(), null, -1);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return new CountingSslEngine(inner.createSSLEngine(host, port), host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return inner.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return inner.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return inner.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return inner.getSupportedSSLParameters();
+        }
+    }
+
+    // ---
+    // Forwards everything to the JDK's SSLEngine and looks at the handshake status of
+    // the results of "wrap" and "unwrap". A handshake is counted once per engine, later
+    // "FINISHED" (e.g. after a TLSv1.3 post-handshake message) are ignored.
+    // ---
+
+    private class CountingSslEngine extends SSLEngine {
+
+        private final @NotNull SSLEngine inner;
+        private volatile boolean counted = false;
+
+        CountingSslEngine(@NotNull SSLEngine inner, @Nullable String host, int port) {
+            super(host, port);
+            this.inner = inner;
+        }
+
+        private @NotNull SSLEngineResult look(@NotNull SSLEngineResult result) {
+            if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED && !counted) {
+                counted = true;
+                onHandshakeFinished(inner);
+            }
+            return result;
+        }
+
+        @Override
+        public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+            return look(inner.wrap(srcs, offset, length, dst));
+        }
+
+        @Override
+        public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+            return look(inner.unwrap(src, dsts, offset, length));
+        }
+
+        @Override
+        public Runnable getDelegatedTask() {
+            return inner.getDelegatedTask();
+        }
+
+        @Override
+        public void closeInbound() throws SSLException {
+            inner.closeInbound();
+        }
+
+        @Override
+        public boolean isInboundDone() {
+            return inner.isInboundDone();
+        }
+
+        @Override
+        public void closeOutbound() {
+            inner.closeOutbound();
+        }
+
+        @Override
+        public boolean isOutboundDone() {
+            return inner.isOutboundDone();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return inner.getSupportedCipherSuites();
+        }
+
+        @Override
+        public String[] getEnabledCipherSuites() {
+            return inner.getEnabledCipherSuites();
+        }
+
+        @Override
+        public void setEnabledCipherSuites(String[] suites) {
+            inner.setEnabledCipherSuites(suites);
+        }
+
+        @Override
+        public String[] getSupportedProtocols() {
+            return inner.getSupportedProtocols();
+        }
+
+        @Override
+        public String[] getEnabledProtocols() {
+            return inner.getEnabledProtocols();
+        }
+
+        @Override
+        public void setEnabledProtocols(String[] protocols) {
+            inner.setEnabledProtocols(protocols);
+        }
+
+        @Override
+        public SSLSession getSession() {
+            return inner.getSession();
+        }
+
+        @Override
+        public SSLSession getHandshakeSession() {
+            return inner.getHandshakeSession();
+        }
+
+        @Override
+        public void beginHandshake() throws SSLException {
+            inner.beginHandshake();
+        }
+
+        @Override
+        public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+            return inner.getHandshakeStatus();
+        }
+
+        @Override
+        public void setUseClientMode(boolean mode) {
+            inner.setUseClientMode(mode);
+        }
+
+        @Override
+        public boolean getUseClientMode() {
+            return inner.getUseClientMode();
+        }
+
+        @Override
+        public void setNeedClientAuth(boolean need) {
+            inner.setNeedClientAuth(need);
+        }
+
+        @Override
+        public boolean getNeedClientAuth() {
+            return inner.getNeedClientAuth();
+        }
+
+        @Override
+        public void setWantClientAuth(boolean want) {
+            inner.setWantClientAuth(want);
+        }
+
+        @Override
+        public boolean getWantClientAuth() {
+            return inner.getWantClientAuth();
+        }
+
+        @Override
+        public void setEnableSessionCreation(boolean flag) {
+            inner.setEnableSessionCreation(flag);
+        }
+
+        @Override
+        public boolean getEnableSessionCreation() {
+            return inner.getEnableSessionCreation();
+        }
+
+        @Override
+        public SSLParameters getSSLParameters() {
+            return inner.getSSLParameters();
+        }
+
+        @Override
+        public void setSSLParameters(SSLParameters params) {
+            inner.setSSLParameters(params);
+        }
+
+        @Override
+        public String getApplicationProtocol() {
+            return inner.getApplicationProtocol();
+        }
+
+        @Override
+        public String getHandshakeApplicationProtocol() {
+            return inner.getHandshakeApplicationProtocol();
+        }
+
+        @Override
+        public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+            inner.setHandshakeApplicationProtocolSelector(selector);
+        }
+
+        @Override
+        public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+            return inner.getHandshakeApplicationProtocolSelector();
+        }
+    }
+}
@@ -3,17 +3,53 @@ package name.heavycarbon.url_access_checker.main;
 import name.heavycarbon.url_access_checker.building.*;
 import name.heavycarbon.url_access_checker.credentials.Credentials;
 import name.heavycarbon.url_access_checker.credentials.CredentialsFromFile;
+import name.heavycarbon.url_access_checker.dns.DnsPinning;
+import name.heavycarbon.url_access_checker.http.CapturedBody;
+import name.heavycarbon.url_access_checker.http.Deadline;
+import name.heavycarbon.url_access_checker.http.FetchPolicy;
+import name.heavycarbon.url_access_checker.http.HttpClientRegistry;
+import name.heavycarbon.url_access_checker.http.RequestContext;
+import name.heavycarbon.url_access_checker.http.RetryPolicy;
+import name.heavycarbon.url_access_checker.http.Timeouts;
 import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.running.AsyncTestSuiteRunner;
+import name.heavycarbon.url_access_checker.running.ConsoleSink;
+import name.heavycarbon.url_access_checker.running.Daemon;
+import name.heavycarbon.url_access_checker.running.Engine;
+import name.heavycarbon.url_access_checker.running.JUnitXmlSink;
+import name.heavycarbon.url_access_checker.running.JsonLinesSink;
+import name.heavycarbon.url_access_checker.running.LimitReport;
+import name.heavycarbon.url_access_checker.running.ResultSink;
 import name.heavycarbon.url_access_checker.running.TestSuiteResults;
 import name.heavycarbon.url_access_checker.running.TestSuiteRunner;
+import name.heavycarbon.url_access_checker.running.TimingReport;
+import name.heavycarbon.url_access_checker.running.WarmUp;
+import name.heavycarbon.url_access_checker.stub.EndToEndBenchmark;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 // ---
 // The command supports -h/--help (help) and -V/--version (version print)
@@ -43,37 +79,119 @@ public class UrlAccessChecker implements Callable<Integer> {
     }
 
     // ------------------------------------
-    // Converter class for Picocli option
+    // Converter classes for Picocli options
     // ------------------------------------
 
-    public static class CredentialsConverter implements CommandLine.ITypeConverter<Credentials> {
+    private static @NotNull Path expandHome(@NotNull String rawFile) {
+        final Path path = new File(rawFile).toPath();
+        if (path.startsWith(Path.of("~"))) {
+            final Path homePath = Path.of(System.getProperty("user.home"));
+            final Path tailPath = path.subpath(1, path.getNameCount());
+            return homePath.resolve(tailPath);
+        } else {
+            return path;
+        }
+    }
+
+    public static class OutputFileConverter implements CommandLine.ITypeConverter<Path> {
 
         @Override
-        public Credentials convert(final String rawFile) {
+        public Path convert(final String rawFile) {
             if (rawFile.isBlank()) {
                 throw new CommandLine.TypeConversionException("The file is blank: '" + rawFile + "'");
             }
-            final Path path = new File(rawFile).toPath();
-            final Path path2;
-            if (path.startsWith(Path.of("~"))) {
-                final Path homePath = Path.of(System.getProperty("user.home"));
-                final Path tailPath = path.subpath(1, path.getNameCount());
-                path2 = homePath.resolve(tailPath);
-            } else {
-                path2 = path;
+            final Path path = expandHome(rawFile);
+            final Path parent = path.toAbsolutePath().getParent();
+            if (parent != null && !parent.toFile().isDirectory()) {
+                throw new CommandLine.TypeConversionException("The directory of the given file '" + path.toAbsolutePath() + "' does not exist");
             }
-            final var file = path2.toFile();
-            if (!file.exists()) {
-                // if file is "blank" then the file does not exist, although
-                // file.getAbsolutePath() still yields something correct
-                throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' does not exist");
+            if (path.toFile().isDirectory()) {
+                throw new CommandLine.TypeConversionException("Given file '" + path.toAbsolutePath() + "' is a directory");
             }
-            if (!file.isFile()) {
-                throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' is not a file");
+            return path;
+        }
+
+    }
+
+    private static @NotNull Path readableFile(@NotNull String rawFile) {
+        if (rawFile.isBlank()) {
+            throw new CommandLine.TypeConversionException("The file is blank: '" + rawFile + "'");
+        }
+        final Path path = expandHome(rawFile);
+        final var file = path.toFile();
+        if (!file.exists()) {
+            // if file is "blank" then the file does not exist, although
+            // file.getAbsolutePath() still yields something correct
+            throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' does not exist");
+        }
+        if (!file.isFile()) {
+            throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' is not a file");
+        }
+        if (!file.canRead()) {
+            throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' is not readable");
+        }
+        return path;
+    }
+
+    public static class ReadableFileConverter implements CommandLine.ITypeConverter<Path> {
+
+        @Override
+        public Path convert(final String rawFile) {
+            return readableFile(rawFile);
+        }
+
+    }
+
+    public static class SuiteFileConverter implements CommandLine.ITypeConverter<Path> {
+
+        @Override
+        public Path convert(final String rawFile) {
+            final Path path = readableFile(rawFile);
+            final var file = path.toFile();
+            final String name = file.getName().toLowerCase();
+            if (!name.endsWith(".yaml") && !name.endsWith(".yml") && !name.endsWith(".json")) {
+                throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' must end in '.yaml', '.yml' or '.json'");
             }
-            if (!file.canRead()) {
-                throw new CommandLine.TypeConversionException("Given file '" + file.getAbsolutePath() + "' is not readable");
+            return path;
+        }
+
+    }
+
+    // ---
+    // "host:ip" as with curl's "--resolve" (but without a port), the ip being an IPv4 or
+    // IPv6 address literal, the latter possibly in brackets. The host cannot contain ':'.
+    // ---
+
+    public static class ResolveConverter implements CommandLine.ITypeConverter<DnsPinning.Override> {
+
+        @Override
+        public DnsPinning.Override convert(final String raw) {
+            final int colon = raw.indexOf(':');
+            if (colon <= 0 || colon == raw.length() - 1) {
+                throw new CommandLine.TypeConversionException("Expected 'host:ip', but got '" + raw + "'");
+            }
+            final String host = raw.substring(0, colon).trim();
+            String ip = raw.substring(colon + 1).trim();
+            if (ip.startsWith("[") && ip.endsWith("]")) {
+                ip = ip.substring(1, ip.length() - 1);
             }
+            // only an address literal, or getByName() would go and resolve it
+            if (!ip.matches("[0-9a-fA-F:.]+") || !(ip.contains(":") || ip.matches("\\d{1,3}(\\.\\d{1,3}){3}"))) {
+                throw new CommandLine.TypeConversionException("Not an IP address: '" + ip + "'");
+            }
+            try {
+                return new DnsPinning.Override(host, InetAddress.getByName(ip));
+            } catch (UnknownHostException e) {
+                throw new CommandLine.TypeConversionException("Not an IP address: '" + ip + "'");
+            }
+        }
+    }
+
+    public static class CredentialsConverter implements CommandLine.ITypeConverter<Credentials> {
+
+        @Override
+        public Credentials convert(final String rawFile) {
+            final var file = readableFile(rawFile).toFile();
             final var credentialReadingResult = CredentialsFromFile.obtainCredentialsFromFile(file);
             if (credentialReadingResult.ok()) {
                 return credentialReadingResult.credentials();
@@ -87,29 +205,150 @@ public class UrlAccessChecker implements Callable<Integer> {
     // Options filled by Picocli
     // ------------------------------------
 
+    // injected by Picocli, needed to signal problems with option values
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
     // enum is transparently translated (case-sensitive)
-    @CommandLine.Option(names = {"-s", "--scenario"}, order = 1, required = true, description = "This machine plays the role of: local, insider, outsider")
+    @CommandLine.Option(names = {"-s", "--scenario"}, order = 1, description = "This machine plays the role of: local, insider, outsider; required unless '--suite' is given")
     private Scenario scenario;
 
-    // MachineName is translated via converter
-    @CommandLine.Option(names = {"-m", "--machine"}, converter = MachineNameConverter.class, order = 2, required = true, description = "Machine to check (IPv4 address or hostname)")
-    private MachineName machine;
+    // MachineName is translated via converter, several may be given separated by commas or by repeating the option
+    @CommandLine.Option(names = {"-m", "--machine"}, converter = MachineNameConverter.class, split = ",", order = 2, description = "Machine to check (IPv4 address or hostname, optionally followed by ':port'); several may be given, separated by commas; required unless '--machines-file' or '--benchmark' is given")
+    private List<MachineName> machines = new ArrayList<>();
 
-    // Credentials are pulled from the given file via converter
-    @CommandLine.Option(names = {"--wiki-creds"}, converter = CredentialsConverter.class, order = 3, required = true, description = "File with credentials to the wiki URLs (accepts  '~/...' notation)")
+    // Credentials are pulled from the given file via converter; required unless "--training-run" is given
+    @CommandLine.Option(names = {"--wiki-creds"}, converter = CredentialsConverter.class, order = 3, description = "File with credentials to the wiki URLs (accepts  '~/...' notation); required unless '--training-run' is given")
     private Credentials wikiCreds;
 
-    // Credentials are pulled from the given file via converter
-    @CommandLine.Option(names = {"--tools-creds"}, converter = CredentialsConverter.class, order = 4, required = true, description = "File with credentials to the tools URLs (accepts '~/...' notation)")
+    // Credentials are pulled from the given file via converter; required unless "--training-run" is given
+    @CommandLine.Option(names = {"--tools-creds"}, converter = CredentialsConverter.class, order = 4, description = "File with credentials to the tools URLs (accepts '~/...' notation); required unless '--training-run' is given")
     private Credentials toolsCreds;
 
     @CommandLine.Option(names = {"--print-matches"}, defaultValue = "false", order = 5, description = "Also print info about successful matches, not only failed matches")
     private boolean printMatches;
 
+    // enum is transparently translated (case-sensitive)
+    @CommandLine.Option(names = {"--engine"}, defaultValue = "blocking", order = 6, description = "How to perform requests: blocking (one thread per test in flight), async (non-blocking pipeline, results arrive in completion order) (default: ${DEFAULT-VALUE})")
+    private Engine engine;
+
+    // 1 means "run the tests one after the other" for the blocking engine
+    @CommandLine.Option(names = {"--parallelism"}, defaultValue = "1", order = 7, description = "Maximum number of tests in flight at any time; for the blocking engine, each runs on a virtual thread (default: ${DEFAULT-VALUE}, i.e. sequential)")
+    private int parallelism;
+
+    @CommandLine.Option(names = {"--max-per-host"}, defaultValue = "4", order = 8, description = "Maximum number of tests in flight against a single machine (default: ${DEFAULT-VALUE})")
+    private int maxPerHost;
+
+    @CommandLine.Option(names = {"--http2"}, defaultValue = "false", order = 9, description = "Offer HTTP/2 for HTTPS requests, multiplexing all requests with the same credentials to a machine over one connection")
+    private boolean http2;
+
+    @CommandLine.Option(names = {"--head-for-status-only"}, defaultValue = "false", order = 10, description = "Use HEAD instead of GET for tests that only check the status code (some servers answer HEAD differently, hence off by default)")
+    private boolean headForStatusOnly;
+
+    @CommandLine.Option(names = {"--max-body-bytes"}, defaultValue = "1048576", order = 11, description = "Stop receiving a body once this many bytes have been looked at for the expected strings (default: ${DEFAULT-VALUE})")
+    private long maxBodyBytes;
+
+    @CommandLine.Option(names = {"--preemptive-auth"}, defaultValue = "false", order = 12, description = "Send credentials with the first request instead of waiting for the server's 401 challenge (one round-trip per test instead of two)")
+    private boolean preemptiveAuth;
+
+    @CommandLine.Option(names = {"--coalesce-requests"}, defaultValue = "false", order = 13, description = "Send identical requests (same URI, same credentials) only once and check each test against the shared response")
+    private boolean coalesceRequests;
+
+    @CommandLine.Option(names = {"--slowest"}, defaultValue = "5", order = 14, description = "Number of slowest tests to list in the timing report, 0 for none, at most 100 (default: ${DEFAULT-VALUE})")
+    private int slowest;
+
+    @CommandLine.Option(names = {"--benchmark"}, defaultValue = "false", order = 15, description = "Instead of checking a machine, run the scenario's test suite against a local stub server with each runner and way of authenticating, and report throughput and latencies")
+    private boolean benchmark;
+
+    @CommandLine.Option(names = {"--stub-latency"}, defaultValue = "0", order = 16, description = "With '--benchmark', how long the stub server waits before answering, in milliseconds (default: ${DEFAULT-VALUE})")
+    private int stubLatencyMs;
+
+    @CommandLine.Option(names = {"--stub-body-bytes"}, defaultValue = "4096", order = 17, description = "With '--benchmark', the approximate size of the pages served by the stub server (default: ${DEFAULT-VALUE})")
+    private int stubBodyBytes;
+
+    @CommandLine.Option(names = {"--benchmark-repeat"}, defaultValue = "10", order = 18, description = "With '--benchmark', how many times the test suite is run per combination (default: ${DEFAULT-VALUE})")
+    private int benchmarkRepeat;
+
+    @CommandLine.Option(names = {"--jsonl"}, converter = OutputFileConverter.class, order = 19, description = "Also write each result, as it arrives, as a line of JSON to this file (appended to in daemon mode; accepts '~/...' notation)")
+    private Path jsonlFile;
+
+    @CommandLine.Option(names = {"--junit"}, converter = OutputFileConverter.class, order = 20, description = "Also write the results, as they arrive, as a JUnit XML report to this file (in daemon mode, one report per run with its start time added to the name; accepts '~/...' notation)")
+    private Path junitFile;
+
+    @CommandLine.Option(names = {"--suite"}, converter = SuiteFileConverter.class, order = 21, description = "Instead of the scenario's built-in test suite, run the one in this YAML or JSON file, read as the tests run (accepts '~/...' notation)")
+    private Path suiteFile;
+
+    @CommandLine.Option(names = {"--machines-file"}, converter = ReadableFileConverter.class, order = 22, description = "File with more machines to check, one per line, '#' starts a comment (accepts '~/...' notation)")
+    private Path machinesFile;
+
+    @CommandLine.Option(names = {"--adaptive"}, defaultValue = "false", order = 23, description = "Adapt the number of tests in flight against each machine, between 1 and '--max-per-host', to its latency, timeouts and 429/503 answers (AIMD)")
+    private boolean adaptive;
+
+    @CommandLine.Option(names = {"--retries"}, defaultValue = "0", order = 24, description = "How often to send a request again if the connection was refused (with backoff), broke or timed out (default: ${DEFAULT-VALUE})")
+    private int retries;
+
+    @CommandLine.Option(names = {"--hedge"}, defaultValue = "false", order = 25, description = "Send a duplicate of a request that takes longer than the machine's 95th percentile latency, keeping the first answer")
+    private boolean hedge;
+
+    @CommandLine.Option(names = {"--connect-timeout"}, defaultValue = "3000", order = 26, description = "How long connecting (including the TLS handshake) may take, in milliseconds (default: ${DEFAULT-VALUE})")
+    private long connectTimeoutMs;
+
+    @CommandLine.Option(names = {"--header-timeout"}, defaultValue = "3000", order = 27, description = "How long it may take from sending a request to receiving the response headers, connecting included, in milliseconds (default: ${DEFAULT-VALUE})")
+    private long headerTimeoutMs;
+
+    @CommandLine.Option(names = {"--body-idle-timeout"}, defaultValue = "3000", order = 28, description = "How long the body of a response may stall without a single byte arriving, in milliseconds (default: ${DEFAULT-VALUE})")
+    private long bodyIdleTimeoutMs;
+
+    @CommandLine.Option(names = {"--deadline"}, defaultValue = "0", order = 29, description = "Budget for the whole run in seconds: once it is spent, the requests in flight are cut short and reported as 'deadline_exceeded', and no more tests are started; 0 for none (default: ${DEFAULT-VALUE})")
+    private long deadlineSeconds;
+
+    @CommandLine.Option(names = {"--resolve"}, converter = ResolveConverter.class, order = 30, description = "Resolve the host to the given IP address instead of asking DNS, as 'host:ip' (may be given several times)")
+    private List<DnsPinning.Override> resolves = new ArrayList<>();
+
+    @CommandLine.Option(names = {"--warm-up"}, defaultValue = "false", order = 31, description = "Before the first test, open (and TLS-handshake) the connections that the tests will use, all at once")
+    private boolean warmUp;
+
+    @CommandLine.Option(names = {"--daemon"}, defaultValue = "false", order = 32, description = "Keep running, checking every '--interval' seconds in the same JVM, with the HttpClients (and their connections and TLS sessions) kept between runs; the suite file and the machines file are reloaded when they change")
+    private boolean daemon;
+
+    @CommandLine.Option(names = {"--interval"}, defaultValue = "300", order = 33, description = "With '--daemon', the time from the start of a run to the start of the next one, in seconds (default: ${DEFAULT-VALUE})")
+    private long intervalSeconds;
+
+    @CommandLine.Option(names = {"--jitter"}, defaultValue = "10", order = 34, description = "With '--daemon', vary the interval by up to this percentage, up or down (default: ${DEFAULT-VALUE})")
+    private int jitterPercent;
+
+    @CommandLine.Option(names = {"--runs"}, defaultValue = "0", order = 35, description = "With '--daemon', stop after this many runs; 0 to run until stopped (default: ${DEFAULT-VALUE})")
+    private int maxRuns;
+
+    @CommandLine.Option(names = {"--training-run"}, defaultValue = "false", order = 36, description = "Run all the scenarios once against a local stub server, with made-up credentials, and exit; for recording an AppCDS archive (see the 'appcds' Maven profile), all other options are ignored")
+    private boolean trainingRun;
+
+    @CommandLine.Option(names = {"--capture-head"}, defaultValue = "8192", order = 37, description = "Keep this many characters of a body in memory for printing a mismatch, the rest goes to a temporary file; nothing is kept for a match unless '--print-matches' is given (default: ${DEFAULT-VALUE})")
+    private int captureHead;
+
+    @CommandLine.Option(names = {"--junit-keep"}, defaultValue = "10", order = 38, description = "With '--daemon' and '--junit', keep the JUnit reports of this many runs, the latest ones, and delete the older ones; 0 to keep all (default: ${DEFAULT-VALUE})")
+    private int junitKeep;
+
+    // the machines given with "--machine", to which those of "--machines-file" are added
+    private List<MachineName> givenMachines = List.of();
+
     // ------------------------------------
     // Stuff called from call()
     // ------------------------------------
 
+    // ---
+    // The suite file is only read as the runner asks for the tests, a problem with
+    // it shows up as an exception thrown by the runner.
+    // ---
+
+    private @NotNull Iterable<TestConfig> buildTestSuite(@NotNull MachineName machine) {
+        if (suiteFile != null) {
+            return new SuiteFile(suiteFile, machine, Map.of("tools", toolsCreds, "wiki", wikiCreds));
+        } else {
+            return buildTestSuite(machine, scenario, toolsCreds, wikiCreds);
+        }
+    }
+
     private static @NotNull List<TestConfig> buildTestSuite(@NotNull MachineName machine, @NotNull Scenario scenario, @NotNull Credentials toolsCreds, @NotNull Credentials wikiCreds) {
         if (scenario == Scenario.local) {
             return new TestSuiteBuilder_Local(machine, toolsCreds, wikiCreds).build();
@@ -129,7 +368,60 @@ public class UrlAccessChecker implements Callable<Integer> {
         };
     }
 
-    private static int printFinalMessageAndReturnExitValue(@NotNull TestSuiteResults tsr, @NotNull Scenario scenario) {
+    // ---
+    // How many matches to expect is only known for the built-in test suites, "scenario"
+    // is null for a suite file. Returns null if the results for a machine are as expected.
+    // ---
+
+    private static @Nullable String checkMachineResults(@NotNull TestSuiteResults.Counts counts, @Nullable Scenario scenario) {
+        if (counts.isEmpty()) {
+            return "no tests have been run";
+        } else if (counts.mismatches() > 0) {
+            return "failed";
+        } else if (scenario != null && counts.matches() != expectedMatchCount(scenario)) {
+            return "expected " + expectedMatchCount(scenario) + " matches";
+        } else {
+            return null;
+        }
+    }
+
+    // ---
+    // For a run against several machines, the results of each machine are checked
+    // on their own first, then the totals are checked as for a single machine.
+    // ---
+
+    private static int printFinalMessageAndReturnExitValue(@NotNull TestSuiteResults tsr, @NotNull List<MachineName> machines, @Nullable Scenario scenario, int slowestCount) {
+        {
+            final String timingStr = TimingReport.stringify(tsr, slowestCount);
+            if (!timingStr.isEmpty()) {
+                MyPrinting.log(timingStr);
+                MyPrinting.newline();
+            }
+        }
+        {
+            final String limitStr = LimitReport.stringify(tsr);
+            if (!limitStr.isEmpty()) {
+                MyPrinting.log(limitStr);
+                MyPrinting.newline();
+            }
+        }
+        int machinesNotAsExpected = 0;
+        if (machines.size() > 1) {
+            final Map<MachineName, TestSuiteResults.Counts> perMachine = tsr.getPerMachine();
+            final var buf = new StringBuilder();
+            buf.append("Results per machine");
+            for (MachineName machine : machines) {
+                final TestSuiteResults.Counts counts = perMachine.getOrDefault(machine, new TestSuiteResults.Counts(0, 0));
+                final String problem = checkMachineResults(counts, scenario);
+                if (problem != null) {
+                    machinesNotAsExpected++;
+                }
+                buf.append("\n").append(String.format("   %-40s %6d matches %6d mismatches   %s",
+                        machine, counts.matches(), counts.mismatches(), (problem == null) ? "ok" : problem.toUpperCase()));
+            }
+            MyPrinting.log(buf);
+            MyPrinting.newline();
+        }
         var exitVal = -1;
         final var buf = new StringBuilder();
         buf.append("********************************\n");
@@ -140,9 +432,13 @@ public class UrlAccessChecker implements Callable<Integer> {
             buf.append("*** THE TEST SUCCEEDED\n");
             buf.append("*** Matches : ").append(tsr.getMatchesCount()).append("\n");
             buf.append("*** No mismatches\n");
-            final int exp = expectedMatchCount(scenario);
-            if (tsr.getMatchesCount() != exp) {
-                buf.append("*** But expected ").append(exp).append(" matches\n");
+            final int exp = (scenario != null) ? expectedMatchCount(scenario) * machines.size() : tsr.getMatchesCount();
+            if (tsr.getMatchesCount() != exp || machinesNotAsExpected > 0) {
+                buf.append("*** But expected ").append(exp).append(" matches");
+                if (machines.size() > 1) {
+                    buf.append(", ").append(exp / machines.size()).append(" per machine");
+                }
+                buf.append("\n");
                 exitVal = 1;
             } else {
                 exitVal = 0;
@@ -153,6 +449,14 @@ public class UrlAccessChecker implements Callable<Integer> {
             buf.append("*** Mismatches : ").append(tsr.getMismatchesCount()).append("\n");
             exitVal = 1;
         }
+        if (tsr.isStoppedAtDeadline() || tsr.getDeadlineExceededCount() > 0) {
+            buf.append("*** DEADLINE EXCEEDED\n");
+            buf.append("*** Tests cut short : ").append(tsr.getDeadlineExceededCount()).append("\n");
+            if (tsr.isStoppedAtDeadline()) {
+                buf.append("*** The rest of the test suite has not been run\n");
+            }
+            exitVal = Math.max(exitVal, 1);
+        }
         buf.append("********************************");
         MyPrinting.log(buf);
         return exitVal;
@@ -173,38 +477,387 @@ public class UrlAccessChecker implements Callable<Integer> {
         System.setProperty("jdk.httpclient.auth.retrylimit", "0");
     }
 
+    // ---
+    // One machine per line, blank lines and anything after '#' are ignored
+    // ---
+
+    private static @NotNull List<MachineName> readMachinesFile(@NotNull Path path) throws IOException {
+        final List<MachineName> res = new ArrayList<>();
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            final int hash = line.indexOf('#');
+            if (hash >= 0) {
+                line = line.substring(0, hash);
+            }
+            if (!line.isBlank()) {
+                try {
+                    res.add(new MachineName(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        return res;
+    }
+
+    // ---
+    // Checks that Picocli cannot do by itself. A ParameterException makes Picocli
+    // print the message and the usage help, then exit with a nonzero value.
+    // ---
+
+    private void validateOptions() {
+        if (trainingRun) {
+            return;
+        }
+        if (wikiCreds == null || toolsCreds == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required options: '--wiki-creds=<wikiCreds>', '--tools-creds=<toolsCreds>'");
+        }
+        if ((scenario == null) == (suiteFile == null)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Exactly one of '--scenario=<scenario>' and '--suite=<suiteFile>' must be given");
+        }
+        givenMachines = List.copyOf(machines);
+        if (machinesFile != null) {
+            try {
+                machines.addAll(readMachinesFile(machinesFile));
+            } catch (IOException e) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "Reading file '" + machinesFile.toAbsolutePath() + "' failed: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "File '" + machinesFile.toAbsolutePath() + "': " + e.getMessage());
+            }
+        }
+        // a machine given twice would be checked twice
+        machines = List.copyOf(new LinkedHashSet<>(machines));
+        if (machines.isEmpty() && !benchmark) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required option: '--machine=<machine>' or '--machines-file=<machinesFile>'");
+        }
+        if (stubLatencyMs < 0 || stubBodyBytes < 0 || benchmarkRepeat < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The values of '--stub-latency' and '--stub-body-bytes' must not be negative, the value of '--benchmark-repeat' must be at least 1");
+        }
+        if (parallelism < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--parallelism' must be at least 1, but is " + parallelism);
+        }
+        if (maxPerHost < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--max-per-host' must be at least 1, but is " + maxPerHost);
+        }
+        if (retries < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--retries' must not be negative, but is " + retries);
+        }
+        if (connectTimeoutMs < 1 || headerTimeoutMs < 1 || bodyIdleTimeoutMs < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The values of '--connect-timeout', '--header-timeout' and '--body-idle-timeout' must be at least 1");
+        }
+        if (deadlineSeconds < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--deadline' must not be negative, but is " + deadlineSeconds);
+        }
+        if (slowest < 0 || slowest > TestSuiteResults.MAX_SLOWEST) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--slowest' must be between 0 and " + TestSuiteResults.MAX_SLOWEST + ", but is " + slowest);
+        }
+        if (maxBodyBytes < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--max-body-bytes' must be at least 1, but is " + maxBodyBytes);
+        }
+        if (captureHead < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--capture-head' must not be negative, but is " + captureHead);
+        }
+        if (junitKeep < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--junit-keep' must not be negative, but is " + junitKeep);
+        }
+        if (daemon && benchmark) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "'--daemon' and '--benchmark' cannot be given together");
+        }
+        if (intervalSeconds < 1 || jitterPercent < 0 || jitterPercent > 100 || maxRuns < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "The value of '--interval' must be at least 1, the value of '--jitter' between 0 and 100, the value of '--runs' must not be negative");
+        }
+    }
+
+    // ---
+    // For the daemon: the machines file changed, read it again. If that fails, or
+    // leaves no machine, the machines of the previous run are kept.
+    // ---
+
+    private void reloadMachinesFile() {
+        assert machinesFile != null;
+        final List<MachineName> reloaded = new ArrayList<>(givenMachines);
+        try {
+            reloaded.addAll(readMachinesFile(machinesFile));
+        } catch (IOException | IllegalArgumentException e) {
+            MyPrinting.newline();
+            MyPrinting.logException("Could not reload the machines file '" + machinesFile.toAbsolutePath() + "', keeping the machines of the previous run", e);
+            return;
+        }
+        if (reloaded.isEmpty()) {
+            MyPrinting.newline();
+            MyPrinting.logWarning("The machines file '" + machinesFile.toAbsolutePath() + "' lists no machine, keeping the machines of the previous run");
+            return;
+        }
+        machines = List.copyOf(new LinkedHashSet<>(reloaded));
+        MyPrinting.log("\nMachines file changed, now accessing " + machines.size() + " machine(s): " + String.join(", ", machines.stream().map(MachineName::toString).toList()));
+    }
+
     private void entryPrint() {
         final var buf = new StringBuilder();
-        buf.append("Accessing machine : ").append(machine).append("\n");
-        buf.append("Scenario          : ").append(scenario).append("\n");
+        if (machines.size() == 1) {
+            buf.append("Accessing machine : ").append(machines.get(0)).append("\n");
+        } else {
+            buf.append("Accessing machines: ").append(machines.size()).append(", ");
+            buf.append(String.join(", ", machines.stream().map(MachineName::toString).toList())).append("\n");
+        }
+        if (suiteFile != null) {
+            buf.append("Suite file        : ").append(suiteFile).append("\n");
+        } else {
+            buf.append("Scenario          : ").append(scenario).append("\n");
+        }
         buf.append("Wiki creds file   : ").append(wikiCreds).append("\n");
-        buf.append("Tools creds file  : ").append(toolsCreds);
+        buf.append("Tools creds file  : ").append(toolsCreds).append("\n");
+        buf.append("Engine            : ").append(engine).append("\n");
+        buf.append("HTTP/2 for HTTPS  : ").append(http2 ? "offered" : "not offered").append("\n");
+        buf.append("Authentication    : ").append(preemptiveAuth ? "preemptive" : "on challenge").append("\n");
+        buf.append("Identical requests: ").append(coalesceRequests ? "sent once" : "sent every time").append("\n");
+        buf.append("Failed requests   : ").append((retries > 0) ? "retried up to " + retries + " times" : "not retried").append(hedge ? ", slow ones hedged" : "").append("\n");
+        buf.append("Timeouts          : ").append(connectTimeoutMs).append(" ms to connect, ").append(headerTimeoutMs).append(" ms to the headers, ").append(bodyIdleTimeoutMs).append(" ms of body idling").append("\n");
+        buf.append("Deadline          : ").append((deadlineSeconds > 0) ? deadlineSeconds + " s for the whole run" : "none").append("\n");
+        buf.append("Name resolution   : ").append("once per host").append(resolves.isEmpty() ? "" : ", " + resolves.size() + " given with '--resolve'").append("\n");
+        buf.append("Warm-up           : ").append(warmUp ? "connections opened before the first test" : "none").append("\n");
+        buf.append("Daemon            : ").append(daemon ? daemonSettings().stringify() : "no, a single run").append("\n");
+        buf.append("Parallelism       : ").append(parallelism).append(" (max ").append(maxPerHost).append(" per host").append(adaptive ? ", adaptive" : "").append(")").append("\n");
+        buf.append("Fetching          : ").append(headForStatusOnly ? "HEAD" : "GET").append(" for status-only tests, at most ").append(maxBodyBytes).append(" body bytes looked at, ").append(captureHead).append(" characters kept in memory").append(printMatches ? "" : " (none for matches)");
         MyPrinting.log(buf);
     }
 
+    // ---
+    // The parallel runners are compared with "--parallelism" tests in flight, 8 if left at 1.
+    // ---
+
+    private int runBenchmark() {
+        MyPrinting.log("Benchmarking " + ((suiteFile != null) ? "suite file '" + suiteFile : "scenario '" + scenario) + "' against a stub server");
+        MyPrinting.newline();
+        final var settings = new EndToEndBenchmark.Settings(
+                Duration.ofMillis(stubLatencyMs),
+                stubBodyBytes,
+                benchmarkRepeat,
+                (parallelism > 1) ? parallelism : 8,
+                maxPerHost,
+                maxBodyBytes);
+        try {
+            // the benchmark runs the suite several times, so a suite file is read only once, into a list
+            MyPrinting.log(EndToEndBenchmark.run(stubMachine -> {
+                final List<TestConfig> testSuite = new ArrayList<>();
+                buildTestSuite(stubMachine).forEach(testSuite::add);
+                return testSuite;
+            }, settings));
+            MyPrinting.newline();
+            return 0;
+        } catch (IOException e) {
+            MyPrinting.logException("Could not start the stub server", e);
+            return 2;
+        } catch (SuiteFileException | UncheckedIOException e) {
+            MyPrinting.newline();
+            MyPrinting.logException("Could not read the suite file", e);
+            MyPrinting.newline();
+            return 2;
+        }
+    }
+
+    private @NotNull Daemon.Settings daemonSettings() {
+        return new Daemon.Settings(Duration.ofSeconds(intervalSeconds), jitterPercent, maxRuns);
+    }
+
+    // ---
+    // In daemon mode, each run writes its JUnit report to a file of its own, named after
+    // the time the run started: "report.xml" becomes "report.20261018T113900Z.xml".
+    // Only the reports of the latest "--junit-keep" runs are kept (see pruneJUnitReports()).
+    // ---
+
+    private record FileNameParts(@NotNull String base, @NotNull String extension) {
+
+        static @NotNull FileNameParts of(@NotNull Path path) {
+            final String fileName = path.getFileName().toString();
+            final int dot = fileName.lastIndexOf('.');
+            return (dot > 0) ? new FileNameParts(fileName.substring(0, dot), fileName.substring(dot)) : new FileNameParts(fileName, "");
+        }
+    }
+
+    private static @NotNull Path perRunPath(@NotNull Path path, @NotNull Instant runStarted) {
+        final String stamp = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC).format(runStarted);
+        final FileNameParts parts = FileNameParts.of(path);
+        return path.resolveSibling(parts.base() + "." + stamp + parts.extension());
+    }
+
+    // ---
+    // Delete the per-run reports of "path" except the "keep" latest ones; the names sort
+    // by start time. A report that cannot be deleted is mentioned, but does not fail the run.
+    // ---
+
+    private static void pruneJUnitReports(@NotNull Path path, int keep) {
+        final FileNameParts parts = FileNameParts.of(path);
+        final Pattern perRun = Pattern.compile(Pattern.quote(parts.base()) + "\\.\\d{8}T\\d{6}Z" + Pattern.quote(parts.extension()));
+        final Path dir = path.toAbsolutePath().getParent();
+        final List<Path> reports;
+        try (Stream<Path> files = Files.list(dir)) {
+            reports = files.filter(p -> perRun.matcher(p.getFileName().toString()).matches()).sorted().toList();
+        } catch (IOException e) {
+            MyPrinting.logException("Could not list the JUnit reports in '" + dir + "'", e);
+            return;
+        }
+        for (Path old : reports.subList(0, Math.max(0, reports.size() - keep))) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                MyPrinting.logException("Could not delete the old JUnit report '" + old + "'", e);
+            }
+        }
+    }
+
+    // ---
+    // A run of the test suite against the machines, with the given HttpClients, which
+    // the caller closes. Returns the exit value. "runNumber" is 0 for a single run, the
+    // number of the run in daemon mode, where the results of the earlier runs are kept:
+    // appended to the "--jsonl" file, in a JUnit report of their own (see perRunPath()),
+    // of which only the latest "--junit-keep" are kept.
+    // ---
+
+    private int runOnce(@NotNull HttpClientRegistry clientRegistry, int runNumber) {
+        final Instant runStarted = Instant.now();
+        CapturedBody.startRun();
+        DnsPinning.clear();
+        resolves.forEach(DnsPinning::addOverride);
+        // --->
+        final Iterable<TestConfig> testSuite;
+        if (machines.size() == 1) {
+            testSuite = buildTestSuite(machines.get(0));
+        } else {
+            // one suite per machine, taking turns, so the work is spread over the machines from the start
+            testSuite = new RoundRobinSuite(machines.stream().map(this::buildTestSuite).toList());
+        }
+        final String suiteName = (suiteFile != null) ? SuiteFile.defaultName(suiteFile) : scenario.toString();
+        final TestSuiteResults testSuiteResults;
+        final String runStatistics;
+        final List<ResultSink> sinks = new ArrayList<>();
+        sinks.add(new ConsoleSink(printMatches));
+        try {
+            if (jsonlFile != null) {
+                sinks.add((runNumber > 0) ? new JsonLinesSink(jsonlFile, runNumber, runStarted) : new JsonLinesSink(jsonlFile));
+            }
+            if (junitFile != null) {
+                final Path junitPath = (runNumber > 0) ? perRunPath(junitFile, runStarted) : junitFile;
+                sinks.add(new JUnitXmlSink(junitPath, "url_access_checker." + suiteName));
+            }
+        } catch (IOException e) {
+            MyPrinting.logException("Could not open an output file", e);
+            return 2;
+        }
+        // the clock starts now, as the run does
+        final Deadline deadline = (deadlineSeconds > 0) ? Deadline.after(Duration.ofSeconds(deadlineSeconds)) : Deadline.none();
+        // not closed, as that would close the HttpClients, which may serve the next run
+        final var requestContext = new RequestContext(clientRegistry, new FetchPolicy(headForStatusOnly, maxBodyBytes, captureHead, printMatches), coalesceRequests, true, new RetryPolicy(retries, hedge), deadline);
+        try (ResultSink sink = ResultSink.all(sinks)) {
+            if (warmUp) {
+                // as many connections per machine as there may be tests in flight against it
+                final WarmUp.Result warmUpResult = WarmUp.run(testSuite, requestContext, Math.min(parallelism, maxPerHost));
+                MyPrinting.log("\n" + warmUpResult.stringify());
+            }
+            testSuiteResults = switch (engine) {
+                case blocking -> TestSuiteRunner.runTestSuite(testSuite, requestContext, sink, parallelism, maxPerHost, adaptive);
+                case async -> AsyncTestSuiteRunner.runTestSuite(testSuite, requestContext, sink, parallelism, maxPerHost, adaptive);
+            };
+            runStatistics = requestContext.stringifyStatistics() + "\n" + DnsPinning.stringifyStatistics();
+        } catch (IOException | UncheckedIOException e) {
+            // the suite file is read as the tests run, too
+            MyPrinting.newline();
+            MyPrinting.logException("Could not read the suite file or write an output file", e);
+            MyPrinting.newline();
+            return 2;
+        } catch (SuiteFileException e) {
+            MyPrinting.newline();
+            MyPrinting.logException("The suite file is not valid", e);
+            MyPrinting.newline();
+            return 2;
+        } finally {
+            // the temporary files of bodies whose release was missed, so a daemon does not collect them
+            CapturedBody.releaseAll();
+            if (runNumber > 0 && junitFile != null && junitKeep > 0) {
+                pruneJUnitReports(junitFile, junitKeep);
+            }
+        }
+        // <---
+        MyPrinting.newline();
+        MyPrinting.log(runStatistics);
+        MyPrinting.newline();
+        final int exitValue = printFinalMessageAndReturnExitValue(testSuiteResults, machines, scenario, slowest);
+        MyPrinting.newline();
+        return exitValue;
+    }
+
+    // ---
+    // The HttpClients live as long as the daemon, so from the second run on, the
+    // connections still open and the TLS sessions are reused. The statistics of the
+    // HttpClients are thus those since the daemon started. The suite file is read
+    // anew for each run anyway, it only needs a mention when it changed.
+    // ---
+
+    private int runDaemon(@NotNull HttpClientRegistry clientRegistry) {
+        final List<Path> watched = new ArrayList<>();
+        if (suiteFile != null) {
+            watched.add(suiteFile);
+        }
+        if (machinesFile != null) {
+            watched.add(machinesFile);
+        }
+        final var daemonLoop = new Daemon(daemonSettings(), watched);
+        return daemonLoop.loop((runNumber, changed) -> {
+            MyPrinting.log("\nRun " + runNumber + " starting at " + LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            if (changed.contains(suiteFile)) {
+                MyPrinting.log("\nSuite file changed, reloaded: " + suiteFile);
+            }
+            if (machinesFile != null && changed.contains(machinesFile)) {
+                reloadMachinesFile();
+            }
+            return runOnce(clientRegistry, runNumber);
+        });
+    }
+
+    // ---
+    // What a short check does, so that the JVM loads (and an AppCDS archive records) the
+    // classes of Picocli, of the test suite builders, of the HttpClient and of the runners.
+    // The stub server speaks plain HTTP, so the TLS classes are only partly covered.
+    // ---
+
+    private static int runTraining() {
+        final var creds = new Credentials("training", "training");
+        final var settings = new EndToEndBenchmark.Settings(Duration.ZERO, 4096, 1, 8, 4, 1048576);
+        try {
+            for (Scenario trainingScenario : Scenario.values()) {
+                MyPrinting.log("Training with scenario '" + trainingScenario + "'\n");
+                MyPrinting.log(EndToEndBenchmark.run(stubMachine -> buildTestSuite(stubMachine, trainingScenario, creds, creds), settings));
+                MyPrinting.newline();
+            }
+            return 0;
+        } catch (IOException e) {
+            MyPrinting.logException("Could not start the stub server", e);
+            return 2;
+        }
+    }
+
     // ------------------------------------
     // The entry point called by Picocli, returns the process exit value
     // ------------------------------------
 
     @Override
     public Integer call() {
-        entryPrint();
+        validateOptions();
         prologue();
-        // --->
-        final List<TestConfig> testSuite = buildTestSuite(machine, scenario, toolsCreds, wikiCreds);
-        final TestSuiteResults testSuiteResults = TestSuiteRunner.runTestSuite(testSuite);
-        // <---
-        {
-            String str = testSuiteResults.stringify(printMatches);
-            if (!str.isEmpty()) {
-                MyPrinting.newline();
-                MyPrinting.log(str);
-            }
+        if (trainingRun) {
+            return runTraining();
+        }
+        if (benchmark) {
+            DnsPinning.clear();
+            resolves.forEach(DnsPinning::addOverride);
+            return runBenchmark();
+        }
+        entryPrint();
+        final var timeouts = new Timeouts(Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(headerTimeoutMs), Duration.ofMillis(bodyIdleTimeoutMs));
+        try (HttpClientRegistry clientRegistry = new HttpClientRegistry(http2, preemptiveAuth, timeouts)) {
+            return daemon ? runDaemon(clientRegistry) : runOnce(clientRegistry, 0);
         }
-        MyPrinting.newline();
-        final int exitValue = printFinalMessageAndReturnExitValue(testSuiteResults, scenario);
-        MyPrinting.newline();
-        return exitValue;
     }
 
     // ---
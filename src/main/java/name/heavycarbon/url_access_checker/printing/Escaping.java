@@ -0,0 +1,76 @@
+package name.heavycarbon.url_access_checker.printing;
+
+import org.jetbrains.annotations.NotNull;
+
+// ---
+// Escaping text for the machine-readable outputs, appending straight to a
+// StringBuilder instead of building intermediate Strings.
+// ---
+
+public abstract class Escaping {
+
+    private final static char[] hexDigits = "0123456789abcdef".toCharArray();
+
+    // ---
+    // Append "str" as a JSON string, including the enclosing double quotes.
+    // https://www.rfc-editor.org/rfc/rfc8259#section-7
+    // ---
+
+    public static void appendJsonString(@NotNull StringBuilder buf, @NotNull CharSequence str) {
+        buf.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            final char ch = str.charAt(i);
+            switch (ch) {
+                case '"' -> buf.append("\\\"");
+                case '\\' -> buf.append("\\\\");
+                case '\n' -> buf.append("\\n");
+                case '\r' -> buf.append("\\r");
+                case '\t' -> buf.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        buf.append("\\u00").append(hexDigits[ch >> 4]).append(hexDigits[ch & 0xF]);
+                    } else {
+                        buf.append(ch);
+                    }
+                }
+            }
+        }
+        buf.append('"');
+    }
+
+    // ---
+    // Append "str" as XML 1.0 character data, or as the value of an attribute (without
+    // the enclosing double quotes) if "inAttribute". Characters that XML 1.0 does not
+    // allow at all (most control characters, unpaired surrogates) become U+FFFD.
+    // In an attribute, line breaks and tabs are written as character references, so
+    // that they are not normalized to blanks when the attribute is read.
+    // https://www.w3.org/TR/xml/#charsets
+    // ---
+
+    public static void appendXml(@NotNull StringBuilder buf, @NotNull CharSequence str, boolean inAttribute) {
+        for (int i = 0; i < str.length(); i++) {
+            final char ch = str.charAt(i);
+            switch (ch) {
+                case '&' -> buf.append("&amp;");
+                case '<' -> buf.append("&lt;");
+                case '>' -> buf.append("&gt;");
+                case '"' -> buf.append(inAttribute ? "&quot;" : "\"");
+                case '\n' -> buf.append(inAttribute ? "&#10;" : "\n");
+                case '\r' -> buf.append("&#13;");
+                case '\t' -> buf.append(inAttribute ? "&#9;" : "\t");
+                default -> {
+                    if (ch < 0x20 || ch == 0xFFFE || ch == 0xFFFF) {
+                        buf.append('\uFFFD');
+                    } else if (Character.isHighSurrogate(ch) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                        buf.append(ch).append(str.charAt(i + 1));
+                        i++;
+                    } else if (Character.isSurrogate(ch)) {
+                        buf.append('\uFFFD');
+                    } else {
+                        buf.append(ch);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package name.heavycarbon.url_access_checker.printing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/*
+
+ Writes nested, indented text straight to an Appendable in a single pass.
+
+ The text is the same, byte for byte, as what one gets by building a String per
+ nesting level with MyPrinting.joinIfNotEmpty() and then joining it into the level
+ above with MyPrinting.indent(), but without building and copying the intermediate
+ Strings. That is:
+
+ - line() is joinIfNotEmpty(): an empty text is ignored, otherwise a newline separates
+   it from what came before, unless nothing came before at any level, or the enclosing
+   text ends in a newline at the level that decides about the separator.
+ - indent() opens a nested block, dedent() closes it. Every line of the block, and every
+   newline in it, is followed by the indentation of the block, just as with indent().
+   An empty block still yields a line of blanks, as indent("") does.
+
+ To track which level decides about the separator, note that the levels that already
+ hold text always form a prefix 0..nonEmptyDepth-1: writing at a level fills all the
+ levels up to it, and a block can only be opened (empty) or closed at the top.
+
+ Not thread-safe.
+ */
+
+public class IndentingWriter {
+
+    private final static int indentCount = 3;
+
+    private final static String blanks = " ".repeat(indentCount * 16);
+
+    private final @NotNull Appendable out;
+    private int level = 0;
+    private int nonEmptyDepth = 0; // levels below this one already hold text
+    private int newlineLevel = -1; // level at which the last text ended in a newline, -1 if it didn't
+
+    public IndentingWriter(@NotNull Appendable out) {
+        this.out = out;
+    }
+
+    // ---
+    // Render into a String (without final newline if the renderer doesn't add one).
+    // ---
+
+    public static @NotNull String stringify(@NotNull Consumer<IndentingWriter> renderer) {
+        final var buf = new StringBuilder();
+        renderer.accept(new IndentingWriter(buf));
+        return buf.toString();
+    }
+
+    public @NotNull IndentingWriter line(@NotNull String text) {
+        if (!text.isEmpty()) {
+            separate(level);
+            appendIndented(text);
+            newlineLevel = (text.charAt(text.length() - 1) == '\n') ? level : -1;
+            nonEmptyDepth = level + 1;
+        }
+        return this;
+    }
+
+    public @NotNull IndentingWriter indent() {
+        level++;
+        return this;
+    }
+
+    public @NotNull IndentingWriter dedent() {
+        assert level > 0;
+        if (nonEmptyDepth <= level) {
+            // the block is empty, indent("") would have given the blanks alone
+            separate(level - 1);
+            appendBlanks(indentCount);
+            newlineLevel = -1;
+        }
+        level--;
+        nonEmptyDepth = level + 1;
+        return this;
+    }
+
+    // ---
+    // Start a new line of text that goes to level "atLevel", leaving the output
+    // positioned after the indentation of that level.
+    // ---
+
+    private void separate(int atLevel) {
+        if (nonEmptyDepth == 0) {
+            appendBlanks(atLevel * indentCount);
+        } else {
+            final int decidingLevel = nonEmptyDepth - 1;
+            if (newlineLevel == decidingLevel) {
+                // the indentation up to "decidingLevel" followed the newline already
+                appendBlanks((atLevel - decidingLevel) * indentCount);
+            } else {
+                append('\n');
+                appendBlanks(atLevel * indentCount);
+            }
+        }
+    }
+
+    private void appendIndented(@NotNull String text) {
+        int start = 0;
+        int pos;
+        while ((pos = text.indexOf('\n', start)) >= 0) {
+            append(text, start, pos + 1);
+            appendBlanks(level * indentCount);
+            start = pos + 1;
+        }
+        append(text, start, text.length());
+    }
+
+    private void appendBlanks(int count) {
+        while (count > 0) {
+            final int chunk = Math.min(count, blanks.length());
+            append(blanks, 0, chunk);
+            count -= chunk;
+        }
+    }
+
+    private void append(@NotNull CharSequence text, int start, int end) {
+        if (start < end) {
+            try {
+                out.append(text, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void append(char ch) {
+        try {
+            out.append(ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -105,6 +105,23 @@ public class MyPrinting {
         return indent(str, defaultIndentCount);
     }
 
+    // ---
+    // Like String.endsWith(), without copying the tail of "buf" out first
+    // ---
+
+    private static boolean endsWith(@NotNull StringBuilder buf, @NotNull String suffix) {
+        final int offset = buf.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (buf.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // ---
     // This method is used to join "str" to the string in "buf" using the
     // given separator (generally, the newline). If "str" is empty, nothing happens.
@@ -120,8 +137,7 @@ public class MyPrinting {
         if (!str.isEmpty()) {
             if (!buf.isEmpty()) {
                 if (!separator.isEmpty()) {
-                    final int bufLength = buf.length();
-                    if (!buf.substring(bufLength - separator.length(), bufLength).equals(separator)) {
+                    if (!endsWith(buf, separator)) {
                         buf.append(separator);
                     } else {
                         System.err.println("Not adding separator to '" + buf + "' as it already ends in it");
@@ -143,8 +159,7 @@ public class MyPrinting {
 
     public static @NotNull String makeString(@NotNull StringBuilder buf, @NotNull String separator) {
         final var res = buf.toString();
-        final int bufLength = buf.length();
-        if (!(res.isEmpty() || !buf.substring(bufLength - separator.length(), bufLength).equals(separator))) {
+        if (!res.isEmpty() && endsWith(buf, separator)) {
             System.err.println("Warning: StringBuilder has a 'separator' (newline) as final character");
         }
         return res;
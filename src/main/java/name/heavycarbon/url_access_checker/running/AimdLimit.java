@@ -0,0 +1,135 @@
+package name.heavycarbon.url_access_checker.running;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+
+ The number of tests that may be in flight against a single machine, adapted to
+ how the machine copes, the way TCP adapts its congestion window: additive
+ increase, multiplicative decrease (AIMD).
+
+ > limit
+ >   ^           overloaded: halve
+ >   |        /|
+ >   |     /   |  /|
+ >   |  /      |/  |  /
+ >   |/            |/   one more per "limit" healthy answers in a row
+ >   +----------------------------------------------------> time
+
+ An answer is healthy if its latency (up to the response headers) stays within
+ LATENCY_TOLERANCE times the machine's fastest answer so far (plus a little slack,
+ so that sub-millisecond jitter on a fast machine does not count). A slow answer or
+ a failed request holds the limit where it is. A timeout, a "429", a "503" or a
+ "Retry-After" (see LoadSignal) halves it, but at most once per round: the answers
+ to the tests that were already in flight when the limit was cut say nothing new.
+
+ The limit starts at 1 and stays between 1 and "max". Each change is recorded, so
+ that the limit over time can be reported at the end of the run.
+
+ Not thread-safe, the HostScheduler calls it while holding its lock.
+ */
+
+public class AimdLimit {
+
+    // a single change of the limit, "atNanos" on the System.nanoTime() clock
+
+    public record Step(long atNanos, int limit) {
+    }
+
+    // ---
+    // What is left once the run is over, for the report.
+    // ---
+
+    public record History(long startNanos, long endNanos, int max, int cuts, @NotNull List<Step> steps) {
+
+        // the limit in force at "nanos"
+
+        public int limitAt(long nanos) {
+            int limit = steps.getFirst().limit();
+            for (Step step : steps) {
+                if (step.atNanos() > nanos) {
+                    break;
+                }
+                limit = step.limit();
+            }
+            return limit;
+        }
+    }
+
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final long LATENCY_SLACK_NANOS = 5_000_000L;
+    static final double DECREASE_FACTOR = 0.5;
+
+    private final int max;
+    private final long startNanos;
+    private final @NotNull List<Step> steps = new ArrayList<>();
+    private int limit = 1;
+    private int healthyInRound = 0;
+    private int answersToIgnore = 0; // answers to tests started before the last cut
+    private long fastestNanos = Long.MAX_VALUE;
+    private int cuts = 0;
+
+    public AimdLimit(int max, long startNanos) {
+        if (max < 1) {
+            throw new IllegalArgumentException("The 'max' must be at least 1, but is " + max);
+        }
+        this.max = max;
+        this.startNanos = startNanos;
+        steps.add(new Step(startNanos, limit));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // ---
+    // Called once for each test that is done, with the time it took to get the
+    // response headers.
+    // ---
+
+    public void onDone(@NotNull LoadSignal signal, long latencyNanos) {
+        final boolean ignored = answersToIgnore > 0;
+        if (ignored) {
+            answersToIgnore--;
+        }
+        switch (signal) {
+            case overloaded -> {
+                if (!ignored) {
+                    answersToIgnore = limit;
+                    cuts++;
+                    setLimit(Math.max(1, (int) (limit * DECREASE_FACTOR)));
+                }
+            }
+            case answered -> {
+                fastestNanos = Math.min(fastestNanos, latencyNanos);
+                if (latencyNanos <= fastestNanos * LATENCY_TOLERANCE + LATENCY_SLACK_NANOS) {
+                    healthyInRound++;
+                    if (healthyInRound >= limit && limit < max) {
+                        setLimit(limit + 1);
+                    }
+                } else {
+                    healthyInRound = 0;
+                }
+            }
+            case failed -> healthyInRound = 0;
+            case none -> {
+                // says nothing about the machine
+            }
+        }
+    }
+
+    private void setLimit(int newLimit) {
+        healthyInRound = 0;
+        if (newLimit != limit) {
+            limit = newLimit;
+            steps.add(new Step(System.nanoTime(), limit));
+        }
+    }
+
+    public @NotNull History toHistory(long endNanos) {
+        return new History(startNanos, endNanos, max, cuts, List.copyOf(steps));
+    }
+}
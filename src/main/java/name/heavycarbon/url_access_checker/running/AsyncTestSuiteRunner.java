@@ -0,0 +1,503 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.Deadline;
+import name.heavycarbon.url_access_checker.http.RequestContext;
+import name.heavycarbon.url_access_checker.http.HttpRequesting;
+import name.heavycarbon.url_access_checker.http.HttpResultInner;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import name.heavycarbon.url_access_checker.http.PhaseTimings.Phase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/*
+
+ A non-blocking alternative to the TestSuiteRunner. No thread waits for a response.
+ Instead, the tests flow through a pipeline of three stages, connected through
+ java.util.concurrent.Flow, where each stage only receives as many items as it
+ has asked for (backpressure):
+
+ > TestConfigPublisher  -- TestConfig -->  SendingProcessor  -- Exchange -->  CheckingSubscriber
+ >                                              |                                   |
+ >  walks the test suite on demand,            | builds the URI, calls             | calls checkHttpResponse()
+ >  through a HostScheduler                     | HttpClient.sendAsync()            | and hands the TestResult
+ >                                              | and emits the Exchange once       | to the ResultSink
+ >                                              | the response is there             |
+
+ The SendingProcessor requests at most "maxInFlight" TestConfigs ahead, and requests
+ a new one only once an Exchange has been handed to the CheckingSubscriber, so there
+ are never more than "maxInFlight" requests that have been started but whose results
+ have not yet been checked. The TestConfigPublisher does not hand out a TestConfig for
+ a machine that already has "maxInFlightPerHost" requests in flight (or fewer, if the
+ limit is adaptive), but one for the next machine in line that has a free slot (see
+ HostScheduler).
+
+ The results reach the ResultSink in the order in which the responses
+ arrive, which is generally not the order of the test suite.
+ */
+
+public abstract class AsyncTestSuiteRunner {
+
+    // ---
+    // What flows from the sending stage to the checking stage.
+    // If the URI could not be built, or the test could not be run at all, "uri" and
+    // "httpResultInner" are null and "uriMsg" says why.
+    // ---
+
+    private record Exchange(@NotNull TestConfig testConfig,
+                            @Nullable URI uri,
+                            @NotNull String uriMsg,
+                            @Nullable HttpResultInner httpResultInner,
+                            @NotNull PhaseTimings timings) {
+    }
+
+    // ---
+    // Stage 1: emits the TestConfigs of the test suite as they are requested, in the
+    // order decided by the HostScheduler. If the scheduler has nothing that may start
+    // right now (all the machines with tests left are busy), the emitting stops even
+    // though there is demand, and goes on once the scheduler signals a released slot.
+    // Once the Deadline has passed, the publisher completes, even if tests are left.
+    // Supports a single subscriber.
+    // ---
+
+    private static class TestConfigPublisher implements Flow.Publisher<TestConfig> {
+
+        private final @NotNull HostScheduler scheduler;
+        private final @NotNull Deadline deadline;
+        private Subscription subscription;
+        private volatile boolean stoppedAtDeadline = false;
+
+        TestConfigPublisher(@NotNull Iterator<TestConfig> iterator, int maxInFlightPerHost, boolean adaptive, int maxQueued, @NotNull Deadline deadline) {
+            this.scheduler = new HostScheduler(iterator, maxInFlightPerHost, adaptive, maxQueued, this::wakeUp);
+            this.deadline = deadline;
+        }
+
+        @NotNull HostScheduler getScheduler() {
+            return scheduler;
+        }
+
+        boolean isStoppedAtDeadline() {
+            return stoppedAtDeadline;
+        }
+
+        private void wakeUp() {
+            final Subscription sub;
+            synchronized (this) {
+                sub = subscription;
+            }
+            if (sub != null) {
+                sub.wakeUp();
+            }
+        }
+
+        @Override
+        public void subscribe(@NotNull Flow.Subscriber<? super TestConfig> subscriber) {
+            final var sub = new Subscription(subscriber);
+            synchronized (this) {
+                assert subscription == null;
+                subscription = sub;
+            }
+            subscriber.onSubscribe(sub);
+        }
+
+        private class Subscription implements Flow.Subscription {
+
+            private final @NotNull Flow.Subscriber<? super TestConfig> subscriber;
+            private long demand = 0;
+            private boolean emitting = false; // guards against reentrant calls from onNext()
+            private boolean done = false;
+
+            Subscription(@NotNull Flow.Subscriber<? super TestConfig> subscriber) {
+                this.subscriber = subscriber;
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("Requested " + n + " items, but must request at least 1"));
+                    return;
+                }
+                synchronized (this) {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                }
+                emit();
+            }
+
+            // called by the scheduler once a slot has been released
+
+            void wakeUp() {
+                synchronized (this) {
+                    if (emitting || done || demand == 0) {
+                        return;
+                    }
+                    emitting = true;
+                }
+                emit();
+            }
+
+            private void emit() {
+                while (true) {
+                    TestConfig next = null;
+                    boolean complete = false;
+                    RuntimeException failure = null;
+                    synchronized (this) {
+                        try {
+                            if (done || (demand == 0 && !scheduler.isExhausted())) {
+                                emitting = false;
+                                return;
+                            }
+                            if (deadline.isExpired()) {
+                                // the tests in flight still finish, but nothing more is started
+                                stoppedAtDeadline = !scheduler.isExhausted();
+                                complete = true;
+                                done = true;
+                            } else {
+                                next = scheduler.poll();
+                                if (next != null) {
+                                    demand--;
+                                } else if (scheduler.isExhausted()) {
+                                    complete = true;
+                                    done = true;
+                                } else {
+                                    // to be woken up by the scheduler
+                                    emitting = false;
+                                    return;
+                                }
+                            }
+                        } catch (RuntimeException exe) {
+                            // the suite may be read lazily (e.g. from a SuiteFile) and fail halfway
+                            done = true;
+                            emitting = false;
+                            failure = exe;
+                        }
+                    }
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                        return;
+                    }
+                    if (complete) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    assert next != null;
+                    subscriber.onNext(next);
+                }
+            }
+
+            @Override
+            public synchronized void cancel() {
+                done = true;
+            }
+        }
+    }
+
+    // ---
+    // Stage 2: starts an asynchronous request for each TestConfig and emits an Exchange
+    // once the request is done, releasing the TestConfig's slot in the HostScheduler.
+    // Supports a single subscriber, which must subscribe before this processor subscribes
+    // to its publisher.
+    // All the bookkeeping happens while holding the lock on "this"; calls to the upstream
+    // subscription, to the downstream subscriber and to the HttpClient happen outside it.
+    // ---
+
+    private static class SendingProcessor implements Flow.Processor<TestConfig, Exchange> {
+
+        private record Pending(@NotNull TestConfig testConfig, @NotNull URI uri, @NotNull PhaseTimings timings) {
+        }
+
+        private final @NotNull RequestContext requestContext;
+        private final @NotNull HostScheduler scheduler;
+        private final int maxInFlight;
+
+        private Flow.Subscription upstream;
+        private Flow.Subscriber<? super Exchange> downstream;
+
+        private final @NotNull Deque<Exchange> ready = new ArrayDeque<>(); // done, waiting for downstream demand
+        private int inFlight = 0;
+        private long downstreamDemand = 0;
+        private boolean upstreamDone = false;
+        private boolean emitting = false;
+        private boolean finished = false;
+
+        SendingProcessor(@NotNull RequestContext requestContext, @NotNull HostScheduler scheduler, int maxInFlight) {
+            this.requestContext = requestContext;
+            this.scheduler = scheduler;
+            this.maxInFlight = maxInFlight;
+        }
+
+        // --- facing downstream ---
+
+        @Override
+        public void subscribe(@NotNull Flow.Subscriber<? super Exchange> subscriber) {
+            synchronized (this) {
+                assert downstream == null;
+                downstream = subscriber;
+            }
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    synchronized (SendingProcessor.this) {
+                        downstreamDemand = (downstreamDemand + n < 0) ? Long.MAX_VALUE : downstreamDemand + n;
+                    }
+                    emit();
+                }
+
+                @Override
+                public void cancel() {
+                    synchronized (SendingProcessor.this) {
+                        finished = true;
+                    }
+                    upstream.cancel();
+                }
+            });
+        }
+
+        // --- facing upstream ---
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            upstream = subscription;
+            upstream.request(maxInFlight);
+        }
+
+        @Override
+        public void onNext(@NotNull TestConfig testConfig) {
+            final var timings = new PhaseTimings();
+            final var uriBuildResult = TestSuiteRunner.buildURI(testConfig.getEndpoint(), timings);
+            if (!uriBuildResult.ok()) {
+                synchronized (this) {
+                    ready.add(new Exchange(testConfig, null, uriBuildResult.msg(), null, timings));
+                }
+                scheduler.release(testConfig.getEndpoint().machineName());
+                emit();
+                return;
+            }
+            assert uriBuildResult.uri() != null;
+            synchronized (this) {
+                inFlight++;
+            }
+            start(new Pending(testConfig, uriBuildResult.uri(), timings));
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+            synchronized (this) {
+                finished = true;
+            }
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                upstreamDone = true;
+            }
+            emit();
+        }
+
+        // --- the requests ---
+
+        // ---
+        // Every request started must end up in onRequestDone(), or "inFlight" never drops
+        // to 0 and the run never completes. Starting the request may throw (e.g. when
+        // obtaining the HttpClient), and the future is not supposed to complete
+        // exceptionally, but if it does: either way, the test becomes one that could not
+        // be run, as with the blocking runner. Nothing must escape to the publisher,
+        // which would stop emitting for good.
+        // ---
+
+        private void start(@NotNull Pending pending) {
+            CompletableFuture<HttpResultInner> future;
+            try {
+                // ------>
+                future = HttpRequesting.performHttpRequestAsync(pending.uri(), pending.testConfig(), requestContext, pending.timings());
+                // <------
+            } catch (RuntimeException | AssertionError exe) {
+                // an AssertionError too, as the tests run with assertions enabled
+                future = CompletableFuture.failedFuture(exe);
+            }
+            future.whenComplete((inner, throwable) -> onRequestDone(pending, inner, throwable));
+        }
+
+        private void onRequestDone(@NotNull Pending pending, @Nullable HttpResultInner inner, @Nullable Throwable throwable) {
+            synchronized (this) {
+                inFlight--;
+                if (inner != null && throwable == null) {
+                    ready.add(new Exchange(pending.testConfig(), pending.uri(), "OK", inner, pending.timings()));
+                } else {
+                    final Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null) ? throwable.getCause() : throwable;
+                    ready.add(new Exchange(pending.testConfig(), null, "Test could not be run: " + cause, null, pending.timings()));
+                }
+            }
+            // the freed slot may go to a TestConfig that the publisher had to hold back
+            scheduler.release(pending.testConfig().getEndpoint().machineName(), LoadSignal.of(inner), pending.timings().get(Phase.headers));
+            emit();
+        }
+
+        // ---
+        // Hand over whatever is ready, as far as the downstream demand allows, then
+        // signal completion if there is nothing left to do.
+        // For each Exchange handed over, one more TestConfig is requested from upstream.
+        // ---
+
+        private void emit() {
+            synchronized (this) {
+                if (emitting) {
+                    return;
+                }
+                emitting = true;
+            }
+            while (true) {
+                final Exchange exchange;
+                final boolean complete;
+                synchronized (this) {
+                    complete = !finished && upstreamDone && ready.isEmpty() && inFlight == 0;
+                    if (complete) {
+                        finished = true;
+                        exchange = null;
+                    } else if (finished || ready.isEmpty() || downstreamDemand == 0) {
+                        emitting = false;
+                        return;
+                    } else {
+                        exchange = ready.poll();
+                        downstreamDemand--;
+                    }
+                }
+                if (complete) {
+                    downstream.onComplete();
+                    synchronized (this) {
+                        emitting = false;
+                    }
+                    return;
+                }
+                downstream.onNext(exchange);
+                upstream.request(1);
+            }
+        }
+    }
+
+    // ---
+    // Stage 3: checks each Exchange and hands the TestResult to the sink.
+    // Flow guarantees that onNext() is never called concurrently, so neither
+    // the sink nor the TestSuiteResults need locking.
+    // ---
+
+    private static class CheckingSubscriber implements Flow.Subscriber<Exchange> {
+
+        private final int batchSize;
+        private final @NotNull ResultSink sink;
+        private final @NotNull RequestContext requestContext;
+        private final @NotNull TestSuiteResults results = new TestSuiteResults();
+        private final @NotNull CompletableFuture<TestSuiteResults> resultsFuture = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        CheckingSubscriber(int batchSize, @NotNull ResultSink sink, @NotNull RequestContext requestContext) {
+            this.batchSize = batchSize;
+            this.sink = sink;
+            this.requestContext = requestContext;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batchSize);
+        }
+
+        // ---
+        // This runs on one of the HttpClient's threads, where an exception would just
+        // disappear and leave the pipeline hanging. Thus anything thrown (including
+        // an AssertionError) is handed to the waiting caller instead.
+        // ---
+
+        @Override
+        public void onNext(@NotNull Exchange exchange) {
+            try {
+                final TestResult testResult;
+                if (exchange.httpResultInner() == null) {
+                    testResult = new TestResult(exchange.testConfig(), exchange.uriMsg(), exchange.timings());
+                } else {
+                    assert exchange.uri() != null;
+                    final var httpResultOuter = HttpRequesting.checkHttpResponse(exchange.httpResultInner(), exchange.uri(), exchange.testConfig(), requestContext, exchange.timings());
+                    testResult = TestSuiteRunner.buildTestResult(exchange.uri(), exchange.testConfig(), httpResultOuter, exchange.timings());
+                }
+                try {
+                    sink.accept(testResult);
+                } finally {
+                    testResult.releaseBody();
+                }
+                results.add(testResult);
+            } catch (Throwable t) {
+                subscription.cancel();
+                resultsFuture.completeExceptionally(t);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+            resultsFuture.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            resultsFuture.complete(results);
+        }
+
+        public @NotNull CompletableFuture<TestSuiteResults> getResultsFuture() {
+            return resultsFuture;
+        }
+    }
+
+    // ---
+    // Wire up the pipeline, start it, and wait for the last result.
+    // With "adaptive", "maxInFlightPerHost" is only the ceiling of an AimdLimit per machine.
+    // ---
+
+    public static TestSuiteResults runTestSuite(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, @NotNull ResultSink sink, int maxInFlight, int maxInFlightPerHost) {
+        return runTestSuite(testSuite, requestContext, sink, maxInFlight, maxInFlightPerHost, false);
+    }
+
+    public static TestSuiteResults runTestSuite(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, @NotNull ResultSink sink, int maxInFlight, int maxInFlightPerHost, boolean adaptive) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The 'max in flight' must be at least 1, but is " + maxInFlight);
+        }
+        if (maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("The 'max in flight per host' must be at least 1, but is " + maxInFlightPerHost);
+        }
+        final var publisher = new TestConfigPublisher(testSuite.iterator(), maxInFlightPerHost, adaptive, TestSuiteRunner.MAX_QUEUED, requestContext.getDeadline());
+        final var checker = new CheckingSubscriber(maxInFlight, sink, requestContext);
+        final var sender = new SendingProcessor(requestContext, publisher.getScheduler(), maxInFlight);
+        sender.subscribe(checker);
+        publisher.subscribe(sender);
+        try {
+            final TestSuiteResults results = checker.getResultsFuture().join();
+            results.addLimitHistories(publisher.getScheduler().getLimitHistories());
+            if (publisher.isStoppedAtDeadline()) {
+                results.setStoppedAtDeadline();
+            }
+            return results;
+        } catch (CompletionException exe) {
+            // what failed in the pipeline (e.g. the sink) is rethrown as such, as the blocking runner does
+            if (exe.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (exe.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw exe;
+        }
+    }
+
+}
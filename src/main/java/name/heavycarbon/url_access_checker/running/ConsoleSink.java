@@ -0,0 +1,50 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+
+/*
+
+ A ResultSink that prints the mismatches (and the matches, if asked to) on STDOUT
+ as soon as the runner delivers them, in the format that used to be printed for the
+ whole test suite at the end of the run.
+ */
+
+public class ConsoleSink implements ResultSink {
+
+    private final boolean printMatches;
+    private final @NotNull StringBuilder buf = new StringBuilder(); // reused from one result to the next
+
+    public ConsoleSink(boolean printMatches) {
+        this.printMatches = printMatches;
+    }
+
+    @Override
+    public void accept(@NotNull TestResult testResult) {
+        if (testResult.isMatch() && !printMatches) {
+            return;
+        }
+        // a single print, so that the lines do not get mixed up with those of tests still running
+        buf.setLength(0);
+        buf.append("\n");
+        render(new IndentingWriter(buf), testResult);
+        MyPrinting.log(buf);
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public static @NotNull String render(@NotNull TestResult testResult) {
+        return IndentingWriter.stringify(w -> render(w, testResult));
+    }
+
+    public static void render(@NotNull IndentingWriter w, @NotNull TestResult testResult) {
+        w.line(testResult.isMatch() ? "Match:" : "*** Mismatch ***");
+        w.indent();
+        testResult.render(w);
+        w.dedent();
+    }
+}
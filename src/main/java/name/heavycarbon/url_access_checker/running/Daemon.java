@@ -0,0 +1,173 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+ Runs the test suite again and again in the same JVM, so that class loading, the JIT,
+ the HttpClients (with their pooled connections and TLS sessions) and the trust store
+ are paid for once and not for every check.
+
+ > run 1 --> wait --> run 2 --> wait --> run 3 ...  until "maxRuns" runs or until the JVM is told to stop
+ >      |<-- interval +/- jitter -->|
+
+ A run starts "interval" (plus or minus up to "jitterPercent" of it, so that several
+ daemons checking the same machines do not all hit them at the same moment) after the
+ previous one started. If a run takes longer than that, the next one starts at once.
+
+ Before each run, the "watched" files are looked at (size and time of last modification),
+ and the run is told which of them changed since the previous run, so that it can reload
+ them.
+
+ When the JVM is told to stop (SIGINT, SIGTERM), a wait is cut short at once, a run that
+ is going on gets up to STOP_GRACE to finish, so that its results get to the sinks.
+ */
+
+public class Daemon {
+
+    static final Duration STOP_GRACE = Duration.ofSeconds(10);
+
+    public record Settings(@NotNull Duration interval, int jitterPercent, int maxRuns) {
+
+        public Settings {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("The 'interval' must be positive, but is " + interval);
+            }
+            if (jitterPercent < 0 || jitterPercent > 100) {
+                throw new IllegalArgumentException("The 'jitter' must be between 0 and 100 percent, but is " + jitterPercent);
+            }
+            if (maxRuns < 0) {
+                throw new IllegalArgumentException("The 'max runs' must not be negative, but is " + maxRuns);
+            }
+        }
+
+        // ---
+        // This method returns a String that has no final newline, which is important
+        // when chaining output.
+        // ---
+
+        public @NotNull String stringify() {
+            return "every " + interval.toSeconds() + " s" + ((jitterPercent > 0) ? " +/- " + jitterPercent + " %" : "")
+                    + ((maxRuns > 0) ? ", " + maxRuns + " runs" : ", until stopped");
+        }
+    }
+
+    // ---
+    // A run of the test suite, numbered from 1, returning the exit value it would have
+    // as a single run. "changed" are the watched files that changed since the previous run.
+    // ---
+
+    @FunctionalInterface
+    public interface Run {
+        int run(int runNumber, @NotNull List<Path> changed);
+    }
+
+    private record FileStamp(long lastModified, long size) {
+
+        static @NotNull FileStamp of(@NotNull Path path) {
+            final var file = path.toFile();
+            return new FileStamp(file.lastModified(), file.length());
+        }
+    }
+
+    private final @NotNull Settings settings;
+    private final @NotNull Map<Path, FileStamp> stamps = new HashMap<>();
+    private final @NotNull CountDownLatch loopOver = new CountDownLatch(1);
+    private volatile boolean stopping = false;
+    private volatile boolean waiting = false;
+
+    public Daemon(@NotNull Settings settings, @NotNull List<Path> watched) {
+        this.settings = settings;
+        for (Path path : watched) {
+            stamps.put(path, FileStamp.of(path));
+        }
+    }
+
+    private @NotNull List<Path> findChanged() {
+        final List<Path> res = new ArrayList<>();
+        for (Map.Entry<Path, FileStamp> entry : stamps.entrySet()) {
+            final FileStamp now = FileStamp.of(entry.getKey());
+            if (!now.equals(entry.getValue())) {
+                entry.setValue(now);
+                res.add(entry.getKey());
+            }
+        }
+        return res;
+    }
+
+    private long nextDelayNanos(long runStartNanos) {
+        final long interval = settings.interval().toNanos();
+        final long jitter = interval / 100 * settings.jitterPercent();
+        final long offset = (jitter > 0) ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0;
+        return Math.max(0, runStartNanos + interval + offset - System.nanoTime());
+    }
+
+    // ---
+    // Blocks until "maxRuns" runs are over or the JVM is told to stop, returns the exit
+    // value of the last run. A run that throws is reported and counts as exit value 2;
+    // the next run happens as planned.
+    // ---
+
+    public int loop(@NotNull Run run) {
+        final Thread loopThread = Thread.currentThread();
+        final Thread hook = new Thread(() -> {
+            stopping = true;
+            if (waiting) {
+                loopThread.interrupt();
+            }
+            try {
+                loopOver.await(STOP_GRACE.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // stop waiting, the JVM goes down anyway
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(hook);
+        int exitValue = 0;
+        try {
+            for (int runNumber = 1; !stopping && (settings.maxRuns() == 0 || runNumber <= settings.maxRuns()); runNumber++) {
+                final long start = System.nanoTime();
+                try {
+                    exitValue = run.run(runNumber, findChanged());
+                } catch (RuntimeException e) {
+                    MyPrinting.newline();
+                    MyPrinting.logException("Run " + runNumber + " failed", e);
+                    exitValue = 2;
+                }
+                if (stopping || runNumber == settings.maxRuns()) {
+                    break;
+                }
+                final long delay = nextDelayNanos(start);
+                MyPrinting.log(String.format("\nNext run in %.1f s", delay / 1_000_000_000.0));
+                waiting = true;
+                try {
+                    if (!stopping) {
+                        Thread.sleep(Duration.ofNanos(delay));
+                    }
+                } catch (InterruptedException e) {
+                    break; // told to stop
+                } finally {
+                    waiting = false;
+                }
+            }
+        } finally {
+            loopOver.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // the JVM is shutting down, the hook is running
+            }
+        }
+        return exitValue;
+    }
+}
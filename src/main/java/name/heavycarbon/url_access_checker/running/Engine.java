@@ -0,0 +1,11 @@
+package name.heavycarbon.url_access_checker.running;
+
+// ---
+// How the requests are performed:
+// blocking - each test waits for its response, in sequence or on virtual threads (see TestSuiteRunner)
+// async - a non-blocking pipeline based on HttpClient.sendAsync() (see AsyncTestSuiteRunner)
+// ---
+
+public enum Engine {
+    blocking, async
+}
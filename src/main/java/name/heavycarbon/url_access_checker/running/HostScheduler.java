@@ -0,0 +1,298 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+
+ Decides which TestConfig of a test suite runs next, so that the work is spread
+ fairly over the machines of the suite, and caps the number of tests that are
+ in flight against any single machine.
+
+ > test suite ------ read on while some machine has a free slot -----> TestConfig that may start
+ >                   |                                                 ^
+ >                   | TestConfig of a machine that is busy            | round robin over the machines that
+ >                   v                                                 | have a free slot again (first)
+ >              one queue per machine (at most "maxQueued" TestConfigs) -+
+
+ A machine that is slow (or down) keeps "maxInFlightPerHost" of its tests in flight,
+ but does not hold up the other machines: the scheduler skips over its TestConfigs,
+ queueing them, to find one for a machine with a free slot. The test suite is only
+ read as far as needed to find such a TestConfig, and not at all while all the
+ machines are busy, so a suite that is read lazily stays lazy. Once "maxQueued"
+ TestConfigs are queued, the scheduler waits for the busy machines.
+
+ For this to work, the tests of the machines must be mixed. A suite that covers
+ several machines should thus interleave them (see RoundRobinSuite) rather than
+ list all the tests of one machine, then all the tests of the next.
+
+ With "adaptive", the number of slots of a machine is not fixed at "maxInFlightPerHost"
+ but given by an AimdLimit of its own, between 1 and "maxInFlightPerHost", which is fed
+ what each test said about the load on the machine when it is released.
+
+ Each TestConfig handed out must be released once its slot is free again, which is
+ as soon as its test is over. If the caller hands the results on in the order of the
+ suite ("maxHeldBackPerHost" > 0), a test that is over may still have to wait for an
+ earlier, slower one. Its result is then "held back" until the caller says it has been
+ delivered(). A machine with "maxHeldBackPerHost" results held back has no free slot,
+ so the results waiting for a slow test stay bounded. The other machines go on.
+ If reading the test suite throws, the exception comes out of poll() or take().
+
+ The scheduler is called from virtual threads, hence a ReentrantLock rather than
+ "synchronized": a virtual thread that waits for a monitor (in Java 21) keeps its
+ carrier thread, and with few carriers, the tests that would free the slots can
+ then no longer run.
+ */
+
+public class HostScheduler {
+
+    private static class Host {
+
+        private final @NotNull Deque<TestConfig> queued = new ArrayDeque<>();
+        private final @Nullable AimdLimit aimdLimit; // null unless "adaptive"
+        private int inFlight = 0;
+        private int heldBack = 0; // over, but not delivered yet (only counted if "maxHeldBackPerHost" > 0)
+
+        Host(@Nullable AimdLimit aimdLimit) {
+            this.aimdLimit = aimdLimit;
+        }
+    }
+
+    private final @NotNull Iterator<TestConfig> testSuite;
+    private final int maxInFlightPerHost;
+    private final boolean adaptive;
+    private final long startNanos = System.nanoTime();
+    private final int maxQueued;
+    private final int maxHeldBackPerHost; // 0 if the results are not held back
+    private final @NotNull Runnable onRelease;
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    private final @NotNull Condition released = lock.newCondition();
+    private final @NotNull Map<MachineName, Host> hosts = new LinkedHashMap<>();
+    private final @NotNull List<Host> ring = new ArrayList<>(); // in the order of the machines' first appearance
+    private int cursor = 0; // where the round robin goes on
+    private int queuedCount = 0;
+    private boolean testSuiteDone = false;
+
+    // ---
+    // "onRelease" is called after each release(), outside the lock, so that a caller
+    // that does not block in take() learns when poll() may have something again.
+    // ---
+
+    public HostScheduler(@NotNull Iterator<TestConfig> testSuite, int maxInFlightPerHost, boolean adaptive, int maxQueued, int maxHeldBackPerHost, @NotNull Runnable onRelease) {
+        if (maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("The 'max in flight per host' must be at least 1, but is " + maxInFlightPerHost);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("The 'max queued' must not be negative, but is " + maxQueued);
+        }
+        if (maxHeldBackPerHost < 0) {
+            throw new IllegalArgumentException("The 'max held back per host' must not be negative, but is " + maxHeldBackPerHost);
+        }
+        this.testSuite = testSuite;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.adaptive = adaptive;
+        this.maxQueued = maxQueued;
+        this.maxHeldBackPerHost = maxHeldBackPerHost;
+        this.onRelease = onRelease;
+    }
+
+    public HostScheduler(@NotNull Iterator<TestConfig> testSuite, int maxInFlightPerHost, boolean adaptive, int maxQueued, @NotNull Runnable onRelease) {
+        this(testSuite, maxInFlightPerHost, adaptive, maxQueued, 0, onRelease);
+    }
+
+    public HostScheduler(@NotNull Iterator<TestConfig> testSuite, int maxInFlightPerHost, boolean adaptive, int maxQueued, int maxHeldBackPerHost) {
+        this(testSuite, maxInFlightPerHost, adaptive, maxQueued, maxHeldBackPerHost, () -> {
+        });
+    }
+
+    public HostScheduler(@NotNull Iterator<TestConfig> testSuite, int maxInFlightPerHost, boolean adaptive, int maxQueued) {
+        this(testSuite, maxInFlightPerHost, adaptive, maxQueued, 0);
+    }
+
+    private @NotNull Host getHost(@NotNull MachineName machineName) {
+        return hosts.computeIfAbsent(machineName, mn -> {
+            final var newHost = new Host(adaptive ? new AimdLimit(maxInFlightPerHost, startNanos) : null);
+            ring.add(newHost);
+            return newHost;
+        });
+    }
+
+    private boolean hasFreeSlot(@NotNull Host host) {
+        final int limit = (host.aimdLimit != null) ? host.aimdLimit.getLimit() : maxInFlightPerHost;
+        return host.inFlight < limit && (maxHeldBackPerHost == 0 || host.heldBack < maxHeldBackPerHost);
+    }
+
+    // reading on only makes sense if a TestConfig that is read could start
+
+    private boolean isAnyHostFree() {
+        if (ring.isEmpty()) {
+            return true;
+        }
+        for (Host host : ring) {
+            if (hasFreeSlot(host)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---
+    // The next TestConfig that may start right now, or null if there is none at
+    // the moment (or none at all anymore, see isExhausted()).
+    // ---
+
+    public @Nullable TestConfig poll() {
+        lock.lock();
+        try {
+            return pollLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private @Nullable TestConfig pollLocked() {
+        // first the TestConfigs that have been skipped over, which come earlier in the suite
+        final int size = ring.size();
+        for (int i = 0; i < size; i++) {
+            final Host host = ring.get((cursor + i) % size);
+            if (!host.queued.isEmpty() && hasFreeSlot(host)) {
+                cursor = (cursor + i + 1) % size;
+                host.inFlight++;
+                queuedCount--;
+                return host.queued.poll();
+            }
+        }
+        // then read on, skipping over the TestConfigs of the machines that are busy
+        while (!testSuiteDone && queuedCount < maxQueued && isAnyHostFree()) {
+            if (!testSuite.hasNext()) {
+                testSuiteDone = true;
+            } else {
+                final TestConfig testConfig = testSuite.next();
+                final Host host = getHost(testConfig.getEndpoint().machineName());
+                if (hasFreeSlot(host)) {
+                    // nothing can be queued for this machine, or it would have been handed out above
+                    host.inFlight++;
+                    return testConfig;
+                }
+                host.queued.add(testConfig);
+                queuedCount++;
+            }
+        }
+        return null;
+    }
+
+    // ---
+    // Blocks until a TestConfig may start, returns null once the test suite has been
+    // handed out completely.
+    // ---
+
+    public @Nullable TestConfig take() {
+        lock.lock();
+        try {
+            while (true) {
+                final TestConfig testConfig = pollLocked();
+                if (testConfig != null || isExhaustedLocked()) {
+                    return testConfig;
+                }
+                released.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // true once all the TestConfigs of the test suite have been handed out
+
+    public boolean isExhausted() {
+        lock.lock();
+        try {
+            return isExhaustedLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExhaustedLocked() {
+        if (!testSuiteDone && queuedCount == 0 && !testSuite.hasNext()) {
+            testSuiteDone = true;
+        }
+        return testSuiteDone && queuedCount == 0;
+    }
+
+    // ---
+    // Frees the slot of a TestConfig that has been handed out. "signal" and "latencyNanos"
+    // (the time it took to get the response headers) feed the machine's AimdLimit, if any.
+    // ---
+
+    public void release(@NotNull MachineName machineName, @NotNull LoadSignal signal, long latencyNanos) {
+        lock.lock();
+        try {
+            final Host host = hosts.get(machineName);
+            assert host != null && host.inFlight > 0;
+            host.inFlight--;
+            if (maxHeldBackPerHost > 0) {
+                host.heldBack++;
+            }
+            if (host.aimdLimit != null) {
+                host.aimdLimit.onDone(signal, latencyNanos);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        onRelease.run();
+    }
+
+    // ---
+    // The result of a released TestConfig has been handed on (only if "maxHeldBackPerHost" > 0).
+    // ---
+
+    public void delivered(@NotNull MachineName machineName) {
+        assert maxHeldBackPerHost > 0;
+        lock.lock();
+        try {
+            final Host host = hosts.get(machineName);
+            assert host != null && host.heldBack > 0;
+            host.heldBack--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        onRelease.run();
+    }
+
+    public void release(@NotNull MachineName machineName) {
+        release(machineName, LoadSignal.none, 0);
+    }
+
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+
+    // ---
+    // How the limit of each machine changed over the run, in the order in which the
+    // machines appeared in the test suite. Empty unless "adaptive".
+    // ---
+
+    public @NotNull Map<MachineName, AimdLimit.History> getLimitHistories() {
+        lock.lock();
+        try {
+            final long endNanos = System.nanoTime();
+            final Map<MachineName, AimdLimit.History> res = new LinkedHashMap<>();
+            hosts.forEach((machineName, host) -> {
+                if (host.aimdLimit != null) {
+                    res.put(machineName, host.aimdLimit.toHistory(endNanos));
+                }
+            });
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.HttpResultOuter;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import name.heavycarbon.url_access_checker.printing.Escaping;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/*
+
+ A ResultSink that writes the TestResults as a JUnit XML report, one <testcase>
+ per TestResult, as the results arrive, so that CI servers and monitoring can pick
+ up the results.
+
+ > <?xml version="1.0" encoding="UTF-8"?>
+ > <testsuite name="url_access_checker.insider" tests="90" failures="1" errors="0" skipped="0" time="2.345" timestamp="...">
+ >   <testcase classname="TestSuiteBuilder_Insider" name="buildTestSuite_Tools/urlIsMoved_OnlyWithGoodCredentials/good" time="0.009">
+ >     <properties>
+ >       <property name="uri" value="https://localhost/tools"/>
+ >       <property name="credentials" value="good"/>
+ >       <property name="expected" value="301"/>
+ >       <property name="status" value="403"/>
+ >       <property name="outcome" value="http_status_mismatch"/>
+ >       <property name="timings" value="uri_build 0.040 ms, ..."/>
+ >     </properties>
+ >     <failure type="http_status_mismatch" message="Expected HTTP status ...">(the report as printed on the console)</failure>
+ >   </testcase>
+ >   ...
+ > </testsuite>
+
+ A mismatch of the status code or of the body is a <failure>, a request that could
+ not be performed (or was cut short by the run's deadline, or a URI that couldn't be
+ built) is an <error>. The "classname" is
+ the part of the MethodName before the ':'.
+
+ The totals in the <testsuite> tag are only known at the end. The tag is thus first
+ written with zeros into a slot that is large enough for any totals (the rest of the
+ slot being blanks before the closing '>', which XML allows), and overwritten in place
+ through the file channel once the sink is closed. Everything else goes through a
+ buffered writer and a StringBuilder reused from one TestResult to the next, so the
+ memory used does not depend on the number of results.
+ */
+
+public class JUnitXmlSink implements ResultSink {
+
+    private final @NotNull String suiteName;
+    private final @NotNull FileChannel channel;
+    private final @NotNull Writer out;
+    private final @NotNull String timestamp = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+    private final long startNanos = System.nanoTime();
+    private final int headerSlotBytes;
+    private final @NotNull StringBuilder buf = new StringBuilder(4096);
+    private final @NotNull StringBuilder report = new StringBuilder(4096);
+    private int tests = 0;
+    private int failures = 0;
+    private int errors = 0;
+
+    public JUnitXmlSink(@NotNull Path path, @NotNull String suiteName) throws IOException {
+        this.suiteName = suiteName;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        // the widest totals possible; a run of more than Long.MAX_VALUE / 2 nanoseconds (146 years) is not
+        this.headerSlotBytes = headerBytes(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE / 2).length;
+        write(new String(paddedHeader(0, 0, 0, 0), StandardCharsets.UTF_8));
+    }
+
+    private byte @NotNull [] headerBytes(int tests, int failures, int errors, long nanos) {
+        final var header = new StringBuilder();
+        header.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        header.append("<testsuite name=\"");
+        Escaping.appendXml(header, suiteName, true);
+        header.append("\" tests=\"").append(tests);
+        header.append("\" failures=\"").append(failures);
+        header.append("\" errors=\"").append(errors);
+        header.append("\" skipped=\"0\" time=\"");
+        appendSeconds(header, nanos);
+        header.append("\" timestamp=\"").append(timestamp).append("\"");
+        return header.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte @NotNull [] paddedHeader(int tests, int failures, int errors, long nanos) {
+        final byte[] header = headerBytes(tests, failures, errors, nanos);
+        assert header.length <= headerSlotBytes;
+        final byte[] res = new byte[headerSlotBytes + 2];
+        System.arraycopy(header, 0, res, 0, header.length);
+        for (int i = header.length; i < headerSlotBytes; i++) {
+            res[i] = ' ';
+        }
+        res[headerSlotBytes] = '>';
+        res[headerSlotBytes + 1] = '\n';
+        return res;
+    }
+
+    // seconds with three decimals, as JUnit reports have them
+
+    private static void appendSeconds(@NotNull StringBuilder buf, long nanos) {
+        final long millis = (nanos + 500_000) / 1_000_000;
+        final long fraction = millis % 1000;
+        buf.append(millis / 1000).append('.');
+        if (fraction < 100) {
+            buf.append('0');
+        }
+        if (fraction < 10) {
+            buf.append('0');
+        }
+        buf.append(fraction);
+    }
+
+    private void write(@NotNull CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void appendProperty(@NotNull String name, @NotNull String value) {
+        buf.append("      <property name=\"").append(name).append("\" value=\"");
+        Escaping.appendXml(buf, value, true);
+        buf.append("\"/>\n");
+    }
+
+    @Override
+    public void accept(@NotNull TestResult testResult) {
+        final TestConfig testConfig = testResult.getTestConfig();
+        final HttpResultOuter httpResultOuter = testResult.getHttpResultOuter();
+        final HttpStatusCode status = testResult.getActualHttpStatusCode();
+        final String methodName = testResult.getMethodName().name();
+        final int colon = methodName.indexOf(':');
+        buf.setLength(0);
+        buf.append("  <testcase classname=\"");
+        Escaping.appendXml(buf, (colon > 0) ? methodName.substring(0, colon) : suiteName, true);
+        buf.append("\" name=\"");
+        Escaping.appendXml(buf, (colon > 0) ? methodName.substring(colon + 1) : methodName, true);
+        buf.append("\" time=\"");
+        appendSeconds(buf, testResult.getTimings().getTotal());
+        buf.append("\">\n");
+        buf.append("    <properties>\n");
+        if (testResult.getUri() != null) {
+            appendProperty("uri", testResult.getUri().toString());
+        }
+        if (testConfig != null) {
+            appendProperty("credentials", testConfig.getCredData().what().toString());
+            final var expected = new StringBuilder();
+            for (int code : testConfig.getExpectedCodesSorted()) {
+                expected.append(expected.isEmpty() ? "" : " ").append(code);
+            }
+            appendProperty("expected", expected.toString());
+        }
+        if (status != null) {
+            appendProperty("status", String.valueOf(status.getCode()));
+        }
+        if (httpResultOuter != null) {
+            appendProperty("outcome", httpResultOuter.getTestOutcome().toString());
+        }
+        appendProperty("timings", testResult.getTimings().stringify());
+        buf.append("    </properties>\n");
+        if (!testResult.isMatch()) {
+            final boolean isError = (httpResultOuter == null
+                    || httpResultOuter.getTestOutcome() == HttpResultOuter.TestOutcome.request_failure
+                    || httpResultOuter.getTestOutcome() == HttpResultOuter.TestOutcome.deadline_exceeded);
+            final String element = isError ? "error" : "failure";
+            buf.append("    <").append(element).append(" type=\"").append((httpResultOuter != null) ? httpResultOuter.getTestOutcome() : "uri_build_failure").append("\" message=\"");
+            Escaping.appendXml(buf, testResult.getMsg(), true);
+            buf.append("\">");
+            report.setLength(0);
+            testResult.render(new IndentingWriter(report));
+            Escaping.appendXml(buf, report, false);
+            buf.append("</").append(element).append(">\n");
+            if (isError) {
+                errors++;
+            } else {
+                failures++;
+            }
+        }
+        buf.append("  </testcase>\n");
+        tests++;
+        write(buf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            out.append("</testsuite>\n");
+            out.flush();
+            final ByteBuffer header = ByteBuffer.wrap(paddedHeader(tests, failures, errors, System.nanoTime() - startNanos));
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+}
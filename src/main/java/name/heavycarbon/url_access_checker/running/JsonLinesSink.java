@@ -0,0 +1,153 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.HttpResultOuter;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import name.heavycarbon.url_access_checker.printing.Escaping;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/*
+
+ A ResultSink that writes one JSON object per TestResult, one per line
+ (https://jsonlines.org/), as the results arrive. For example (on a single line):
+
+ > {"method":"TestSuiteBuilder_Insider:buildTestSuite_Tools/urlIsMoved_OnlyWithGoodCredentials/good",
+ >  "uri":"https://localhost/tools","credentials":"good","expected":[301],"status":301,
+ >  "outcome":"match","match":true,"message":"...","attempts":1,
+ >  "timings_ns":{"uri_build":40125,"client_acquire":52011,"headers":7956123,"body":539002,"check":7001,"total":8594262}}
+
+ In daemon mode, the records of all the runs go to the same file, one run after the
+ other, and each record starts with the number of its run and the time the run started
+ (which tells apart the runs of daemons started one after the other):
+
+ > {"run":3,"run_started":"2026-10-18T11:39:00Z","method":...}
+
+ "uri", "credentials", "expected", "status" and "outcome" are null if the URI couldn't
+ be built, "status" is also null if the request could not be performed. "attempts" is
+ the number of requests sent, with retries and hedges, 0 if the URI couldn't be built.
+
+ Each record is built in a StringBuilder that is reused for the next one, then goes
+ through a buffered writer onto the file channel, so the memory used does not depend
+ on the number of results.
+ */
+
+public class JsonLinesSink implements ResultSink {
+
+    private final @NotNull Writer out;
+    private final @NotNull StringBuilder buf = new StringBuilder(1024);
+    private final @Nullable String runPrefix; // null for a single run
+
+    // a single run: the file is overwritten
+
+    public JsonLinesSink(@NotNull Path path) throws IOException {
+        this(path, 0, null);
+    }
+
+    // ---
+    // A run of the daemon ("runNumber" > 0, started at "runStarted"): the records are
+    // appended to the file.
+    // ---
+
+    public JsonLinesSink(@NotNull Path path, int runNumber, @Nullable Instant runStarted) throws IOException {
+        final StandardOpenOption mode = (runNumber > 0) ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, mode, StandardOpenOption.WRITE);
+        this.out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        if (runNumber > 0) {
+            assert runStarted != null;
+            this.runPrefix = "\"run\":" + runNumber + ",\"run_started\":\"" + runStarted.truncatedTo(ChronoUnit.SECONDS) + "\",";
+        } else {
+            this.runPrefix = null;
+        }
+    }
+
+    @Override
+    public void accept(@NotNull TestResult testResult) {
+        buf.setLength(0);
+        appendRecord(buf, testResult, runPrefix);
+        buf.append('\n');
+        try {
+            out.append(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static void appendRecord(@NotNull StringBuilder buf, @NotNull TestResult testResult, @Nullable String runPrefix) {
+        final TestConfig testConfig = testResult.getTestConfig();
+        final HttpResultOuter httpResultOuter = testResult.getHttpResultOuter();
+        final HttpStatusCode status = testResult.getActualHttpStatusCode();
+        buf.append('{');
+        if (runPrefix != null) {
+            buf.append(runPrefix);
+        }
+        buf.append("\"method\":");
+        Escaping.appendJsonString(buf, testResult.getMethodName().name());
+        buf.append(",\"uri\":");
+        if (testResult.getUri() != null) {
+            Escaping.appendJsonString(buf, testResult.getUri().toString());
+        } else {
+            buf.append("null");
+        }
+        buf.append(",\"credentials\":");
+        if (testConfig != null) {
+            Escaping.appendJsonString(buf, testConfig.getCredData().what().toString());
+        } else {
+            buf.append("null");
+        }
+        buf.append(",\"expected\":");
+        if (testConfig != null) {
+            buf.append('[');
+            final int[] codes = testConfig.getExpectedCodesSorted();
+            for (int i = 0; i < codes.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                buf.append(codes[i]);
+            }
+            buf.append(']');
+        } else {
+            buf.append("null");
+        }
+        buf.append(",\"status\":");
+        if (status != null) {
+            buf.append(status.getCode());
+        } else {
+            buf.append("null");
+        }
+        buf.append(",\"outcome\":");
+        if (httpResultOuter != null) {
+            Escaping.appendJsonString(buf, httpResultOuter.getTestOutcome().toString());
+        } else {
+            buf.append("null");
+        }
+        buf.append(",\"match\":").append(testResult.isMatch());
+        buf.append(",\"message\":");
+        Escaping.appendJsonString(buf, testResult.getMsg());
+        buf.append(",\"attempts\":").append(testResult.getAttempts());
+        buf.append(",\"timings_ns\":{");
+        final PhaseTimings timings = testResult.getTimings();
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            buf.append('"').append(phase).append("\":").append(timings.get(phase)).append(',');
+        }
+        buf.append("\"total\":").append(timings.getTotal()).append("}}");
+    }
+}
@@ -0,0 +1,85 @@
+package name.heavycarbon.url_access_checker.running;
+
+import org.jetbrains.annotations.NotNull;
+
+// ---
+// Counts durations (in nanoseconds) into buckets whose width grows with the duration,
+// so that the percentiles of any number of tests can be had from a fixed amount of memory.
+//
+// > 0 .. 127 ns            --> one bucket per nanosecond (exact)
+// > [2^e, 2^(e+1)), e >= 7 --> 128 buckets of width 2^(e-7)
+//
+// A percentile is thus off by less than 1/128 (0.8 %) of its value; the maximum is exact.
+// Not thread-safe, the TestSuiteResults are filled from one thread at a time.
+// ---
+
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total = 0;
+    private long max = 0;
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return (int) nanos;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        final int shift = exp - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((nanos >>> shift) & (SUB_COUNT - 1));
+    }
+
+    // the middle of the bucket, as good a guess as any for the values in it
+
+    private static long valueOf(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_COUNT - 1;
+        final long low = ((long) SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    public void add(long nanos) {
+        final long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    public void addAll(@NotNull LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // nearest-rank percentile, 0 if nothing has been added
+
+    public long percentile(int pct) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(pct / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max);
+            }
+        }
+        return max;
+    }
+}
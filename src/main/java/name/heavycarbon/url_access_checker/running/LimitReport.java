@@ -0,0 +1,47 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+// ---
+// Summarizes how the adaptive concurrency limit of each machine changed over the
+// run: the limit at the end of each tenth of the run, then the limit at the end,
+// the highest limit reached and how often the limit was cut.
+// ---
+
+public abstract class LimitReport {
+
+    private static final int SAMPLES = 10;
+
+    private static @NotNull String stringifyHistory(@NotNull MachineName machineName, @NotNull AimdLimit.History history) {
+        final var buf = new StringBuilder();
+        buf.append(String.format("%-40s", machineName));
+        final long duration = history.endNanos() - history.startNanos();
+        for (int i = 1; i <= SAMPLES; i++) {
+            buf.append(String.format(" %3d", history.limitAt(history.startNanos() + duration * i / SAMPLES)));
+        }
+        final int highest = history.steps().stream().mapToInt(AimdLimit.Step::limit).max().orElse(1);
+        buf.append(String.format("   final %d, highest %d of %d, cut %d times",
+                history.steps().getLast().limit(), highest, history.max(), history.cuts()));
+        return buf.toString();
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output. Empty if the limits were not adaptive.
+    // ---
+
+    public static @NotNull String stringify(@NotNull TestSuiteResults results) {
+        final Map<MachineName, AimdLimit.History> histories = results.getLimitHistories();
+        if (histories.isEmpty()) {
+            return "";
+        }
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, "Concurrency limit per machine, at the end of each tenth of the run");
+        histories.forEach((machineName, history) -> MyPrinting.joinIfNotEmpty(buf, MyPrinting.indent(stringifyHistory(machineName, history))));
+        return MyPrinting.makeString(buf);
+    }
+}
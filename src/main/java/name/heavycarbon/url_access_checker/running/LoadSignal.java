@@ -0,0 +1,48 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.http.HttpResultInner;
+import name.heavycarbon.url_access_checker.http.HttpResultInnerFailure;
+import name.heavycarbon.url_access_checker.http.HttpResultInnerSuccess;
+import org.jetbrains.annotations.Nullable;
+
+// ---
+// What a finished test says about the load on its machine, as far as an AimdLimit
+// is concerned. Whether the test was a "match" does not matter here: a "403" that
+// was expected to be a "200" is still a healthy answer.
+//
+// "answered"   : the machine answered; whether it answered fast enough is up to the AimdLimit
+// "overloaded" : the request timed out, or the machine answered "429 Too Many Requests" or
+//                "503 Service Unavailable", or asked to be left alone with a "Retry-After"
+// "failed"     : the request failed otherwise (e.g. the connection was refused)
+// "none"       : no request has been sent (e.g. the URI could not be built), or it has been
+//                cut short because the run's Deadline passed
+// ---
+
+public enum LoadSignal {
+
+    answered, overloaded, failed, none;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    public static LoadSignal of(@Nullable HttpResultInner httpResultInner) {
+        if (httpResultInner instanceof HttpResultInnerFailure failure) {
+            return switch (failure.getFailureCause()) {
+                case timeout -> overloaded;
+                case deadline -> none; // cut short by us, not slowed down by the machine
+                default -> failed;
+            };
+        }
+        if (httpResultInner instanceof HttpResultInnerSuccess success) {
+            final int code = success.getHttpStatusCode().getCode();
+            if (code == TOO_MANY_REQUESTS || code == SERVICE_UNAVAILABLE) {
+                return overloaded;
+            }
+            if (success.getHttpResponse() != null && success.getHttpResponse().headers().firstValue("Retry-After").isPresent()) {
+                return overloaded;
+            }
+            return answered;
+        }
+        return none;
+    }
+}
@@ -0,0 +1,67 @@
+package name.heavycarbon.url_access_checker.running;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/*
+
+ Where the runners hand each TestResult as soon as the test is over, so that the
+ result can be printed (or written somewhere) right away and then dropped. The
+ TestSuiteResults only keep counts, histograms and the slowest few TestSummaries.
+
+ The runners call accept() from one thread at a time, an implementation need not
+ be thread-safe. A sink that writes to a file throws an UncheckedIOException from
+ accept() if writing fails.
+
+ The caller, not the runner, closes the sink once the test suite has been run.
+ */
+
+@FunctionalInterface
+public interface ResultSink extends Closeable {
+
+    void accept(@NotNull TestResult testResult);
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // ---
+    // A sink that hands each TestResult to all the "sinks", in order, and closes
+    // all of them even if closing one fails.
+    // ---
+
+    static @NotNull ResultSink all(@NotNull List<ResultSink> sinks) {
+        final List<ResultSink> copy = List.copyOf(sinks);
+        return new ResultSink() {
+
+            @Override
+            public void accept(@NotNull TestResult testResult) {
+                for (ResultSink sink : copy) {
+                    sink.accept(testResult);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                IOException first = null;
+                for (ResultSink sink : copy) {
+                    try {
+                        sink.close();
+                    } catch (IOException e) {
+                        if (first == null) {
+                            first = e;
+                        } else {
+                            first.addSuppressed(e);
+                        }
+                    }
+                }
+                if (first != null) {
+                    throw first;
+                }
+            }
+        };
+    }
+}
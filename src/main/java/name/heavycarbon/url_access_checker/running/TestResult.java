@@ -1,9 +1,10 @@
 package name.heavycarbon.url_access_checker.running;
 
+import name.heavycarbon.url_access_checker.building.MachineName;
 import name.heavycarbon.url_access_checker.building.MethodName;
 import name.heavycarbon.url_access_checker.building.TestConfig;
 import name.heavycarbon.url_access_checker.http.*;
-import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.printing.IndentingWriter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -16,7 +17,9 @@ import java.net.URI;
  > TestResult
  > |
  > +-- @NotNull  MethodName methodName // wrapped String
+ > +-- @NotNull  MachineName machineName // the machine tested, also when there are no "details"
  > +-- @NotNull  String     msg        // the same as the String from "HttpResultOuter" (unless the URI construction failed)
+ > +-- @NotNull  PhaseTimings timings  // how long the phases of the test took
  > +-- @Nullable Details    details    // locally visible record
  >               |
  >               +-- @NotNull URI uri
@@ -36,9 +39,11 @@ import java.net.URI;
  >                            +-- @NotNull HttpResultInner httpResultInner
  >                                |        |
  >                                |        +-- @NotNull HttpClientOutcome httpClientOutcome // an enum signaling what jaba.netHttpClient delivered
+ >                                |        +-- int attempts // requests sent, with retries and hedges
  >                                |
  >                                +->> @NotNull HttpResultInnerFailure
  >                                |             |
+ >                                |             +-- @NotNull FailureCause failureCause; // what a retry would be about
  >                                |             +-- @Nullable String exceptionClass; // null if there has not been an exception
  >                                |             +-- @NotNull String msg; // message from the exception or a synthetic message
  >                                |
@@ -58,8 +63,10 @@ public class TestResult {
     }
 
     final @NotNull MethodName methodName; // also available as details.testConfig.methodName
+    final @NotNull MachineName machineName; // also available as details.testConfig.endpoint.machineName
     final @NotNull String msg;
     final @Nullable Details details;
+    final @NotNull PhaseTimings timings;
 
     // ---
     // The standard constructor.
@@ -67,63 +74,128 @@ public class TestResult {
     // The "msg" is the msg from the HttpResultOuter.
     // ---
 
-    public TestResult(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull HttpResultOuter httpResultOuter, @NotNull String msg) {
+    public TestResult(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull HttpResultOuter httpResultOuter, @NotNull String msg, @NotNull PhaseTimings timings) {
         this.methodName = testConfig.getMethodName(); // the method
+        this.machineName = testConfig.getEndpoint().machineName();
         this.msg = msg;
         this.details = new Details(uri, testConfig, httpResultOuter);
+        this.timings = timings;
     }
 
     // ---
     // This constructor is called when the URL couldn't even be properly built
+    // (or the test couldn't be run at all). The "testConfig" only provides the
+    // method name and the machine, there are no "details".
     // The "msg" is the msg from the failed UriBuildResult.
     // ---
 
-    public TestResult(@NotNull MethodName methodName, @NotNull String msg) {
-        this.methodName = methodName;
+    public TestResult(@NotNull TestConfig testConfig, @NotNull String msg, @NotNull PhaseTimings timings) {
+        this.methodName = testConfig.getMethodName();
+        this.machineName = testConfig.getEndpoint().machineName();
         this.msg = msg;
         this.details = null;
+        this.timings = timings;
     }
 
     // ---
-    // Printing it up
+    // A TestResult is a "match" only if the request could be performed and the outcome is "match".
+    // Anything else goes into the "mismatches".
     // ---
 
-    private @NotNull String stringifyUri() {
-        if (details != null) {
-            return "URI         : " + details.uri;
-        } else {
-            return "";
+    public boolean isMatch() {
+        return details != null && details.httpResultOuter.getTestOutcome() == HttpResultOuter.TestOutcome.match;
+    }
+
+    public @NotNull MethodName getMethodName() {
+        return methodName;
+    }
+
+    public @NotNull MachineName getMachineName() {
+        return machineName;
+    }
+
+    // null if the URI couldn't be built
+
+    public @Nullable URI getUri() {
+        return (details != null) ? details.uri : null;
+    }
+
+    public @NotNull PhaseTimings getTimings() {
+        return timings;
+    }
+
+    // null if the URI couldn't be built
+
+    public @Nullable TestConfig getTestConfig() {
+        return (details != null) ? details.testConfig : null;
+    }
+
+    // null if the URI couldn't be built
+
+    public @Nullable HttpResultOuter getHttpResultOuter() {
+        return (details != null) ? details.httpResultOuter : null;
+    }
+
+    public @NotNull String getMsg() {
+        return msg;
+    }
+
+    // how many requests have been sent, with retries and hedges, 0 if the URI couldn't be built
+
+    public int getAttempts() {
+        return (details != null) ? details.httpResultOuter.getHttpResultInner().getAttempts() : 0;
+    }
+
+    // the status code the server answered with, null if the request could not be performed
+
+    public @Nullable HttpStatusCode getActualHttpStatusCode() {
+        if (details != null && details.httpResultOuter.getHttpResultInner() instanceof HttpResultInnerSuccess success) {
+            return success.getHttpStatusCode();
         }
+        return null;
     }
 
-    private @NotNull String stringifyDetails() {
+    // ---
+    // Drop what has been kept of the body, once the sinks have had the TestResult
+    // (see CapturedBody).
+    // ---
+
+    public void releaseBody() {
+        if (details != null && details.httpResultOuter.getHttpResultInner() instanceof HttpResultInnerSuccess success) {
+            success.releaseBody();
+        }
+    }
+
+    // ---
+    // Printing it up
+    // ---
+
+    private void renderDetails(@NotNull IndentingWriter w) {
         assert details != null;
-        final var buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, stringifyUri());
+        w.line("URI         : " + details.uri);
         {
-            MyPrinting.joinIfNotEmpty(buf, "Test Configuration");
+            w.line("Test Configuration");
             final boolean withPath = false; // we already have the URI at the top level
             final boolean withMethodName = false; // we already have this at the top level
-            final var str1 = details.testConfig.stringify(withPath, withMethodName);
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
+            w.indent();
+            details.testConfig.render(w, withPath, withMethodName);
+            w.dedent();
         }
         {
 
-            MyPrinting.joinIfNotEmpty(buf, "HTTP result, outer");
+            w.line("HTTP result, outer");
 
             final AlsoAdd alsoAdd1 =
                     switch (details.httpResultOuter().getTestOutcome()) {
-                        case match, request_failure -> AlsoAdd.nothing;
+                        case match, request_failure, deadline_exceeded -> AlsoAdd.nothing;
                         case body_mismatch -> AlsoAdd.httpResponseAndBody;
                         case http_status_mismatch -> AlsoAdd.httpResponse;
                     };
             final AlsoAdd alsoAdd2 = AlsoAdd.max(alsoAdd1, details.testConfig().getOptions().getAlsoAdd());
-            final var str1 = details.httpResultOuter.stringify(alsoAdd2);
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
+            w.indent();
+            details.httpResultOuter.render(w, alsoAdd2);
+            w.dedent();
         }
-        return buf.toString();
     }
 
     // ---
@@ -132,12 +204,18 @@ public class TestResult {
     // ---
 
     public @NotNull String stringify() {
-        final var buf = new StringBuilder();
-        MyPrinting.joinIfNotEmpty(buf, "Method      : " + methodName.name());
-        MyPrinting.joinIfNotEmpty(buf, "Message     : " + msg);
+        return IndentingWriter.stringify(this::render);
+    }
+
+    public void render(@NotNull IndentingWriter w) {
+        w.line("Method      : " + methodName.name());
+        w.line("Message     : " + msg);
+        w.line("Timings     : " + timings.stringify());
+        if (getAttempts() > 1) {
+            w.line("Attempts    : " + getAttempts());
+        }
         if (details != null) {
-            MyPrinting.joinIfNotEmpty(buf, stringifyDetails());
+            renderDetails(w);
         }
-        return MyPrinting.makeString(buf);
     }
 }
@@ -1,97 +1,157 @@
 package name.heavycarbon.url_access_checker.running;
 
-import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// ---
+// The results of running a test suite, as needed for the final summary.
+// The full TestResults have already gone to the ResultSink; what is kept here does
+// not grow with the number of tests:
+//
+// > counts             --> matches, mismatches, cut short by the deadline, per machine too
+// > LatencyHistograms  --> one per phase and one for the total, for the percentiles
+// > TestSummaries      --> only the MAX_SLOWEST slowest tests (by total time)
+//
+// If the run's Deadline passed, "stoppedAtDeadline" says that tests of the suite
+// were left unstarted; the tests that it cut short are counted.
+// ---
 
 public class TestSuiteResults {
 
-    // TestResults go into one of these two lists,
+    // the most tests that the timing report can list as the slowest
 
-    private final @NotNull List<TestResult> matches = new LinkedList<>();
-    private final @NotNull List<TestResult> mismatches = new LinkedList<>();
+    public static final int MAX_SLOWEST = 100;
+
+    public record Counts(int matches, int mismatches) {
+
+        public boolean isEmpty() {
+            return matches == 0 && mismatches == 0;
+        }
+
+        @NotNull Counts plus(@NotNull Counts other) {
+            return new Counts(matches + other.matches, mismatches + other.mismatches);
+        }
+    }
+
+    private static final @NotNull Comparator<TestSummary> byTotal = Comparator.comparingLong((TestSummary ts) -> ts.timings().getTotal());
+
+    private final @NotNull Map<MachineName, AimdLimit.History> limitHistories = new LinkedHashMap<>(); // only if the limits were adaptive
+    private final @NotNull Map<MachineName, Counts> perMachine = new LinkedHashMap<>(); // in the order of their first result
+    private final @NotNull Map<PhaseTimings.Phase, LatencyHistogram> phaseHistograms = new EnumMap<>(PhaseTimings.Phase.class);
+    private final @NotNull LatencyHistogram totalHistogram = new LatencyHistogram();
+    private final @NotNull PriorityQueue<TestSummary> slowest = new PriorityQueue<>(byTotal); // the fastest of them at the head
+    private int matchesCount = 0;
+    private int mismatchesCount = 0;
+    private int deadlineExceededCount = 0;
+    private boolean stoppedAtDeadline = false;
 
     // Default constructor
 
     public TestSuiteResults() {
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            phaseHistograms.put(phase, new LatencyHistogram());
+        }
     }
 
-    // Constructor to use when you already have lists of TestResult
-    // See also: merge()
+    // direct access
 
-    public TestSuiteResults(List<TestResult> matches, List<TestResult> mismatches) {
-        this.matches.addAll(matches);
-        this.mismatches.addAll(mismatches);
+    public boolean isEmpty() {
+        return totalHistogram.getCount() == 0;
     }
 
-    // direct access
+    public @NotNull LatencyHistogram getHistogram(@NotNull PhaseTimings.Phase phase) {
+        return phaseHistograms.get(phase);
+    }
 
-    public @NotNull List<TestResult> getMatches() {
-        return matches;
+    public @NotNull LatencyHistogram getTotalHistogram() {
+        return totalHistogram;
     }
 
-    // direct access
+    // the slowest tests, slowest first, at most MAX_SLOWEST
+
+    public @NotNull List<TestSummary> getSlowest() {
+        final List<TestSummary> res = new ArrayList<>(slowest);
+        res.sort(byTotal.reversed());
+        return res;
+    }
 
-    public @NotNull List<TestResult> getMismatches() {
-        return mismatches;
+    public @NotNull Map<MachineName, Counts> getPerMachine() {
+        return perMachine;
     }
 
     public boolean isMatchesEmpty() {
-        return matches.isEmpty();
+        return matchesCount == 0;
     }
 
     public boolean isMismatchesEmpty() {
-        return mismatches.isEmpty();
+        return mismatchesCount == 0;
     }
 
     public int getMatchesCount() {
-        return matches.size();
+        return matchesCount;
     }
 
     public int getMismatchesCount() {
-        return mismatches.size();
+        return mismatchesCount;
     }
 
-    public void addToMatches(@NotNull TestResult testResult) {
-        matches.add(testResult);
+    public int getDeadlineExceededCount() {
+        return deadlineExceededCount;
     }
 
-    public void addToMismatches(@NotNull TestResult testResult) {
-        mismatches.add(testResult);
+    public boolean isStoppedAtDeadline() {
+        return stoppedAtDeadline;
     }
 
-    // ---
-    // This method returns a String that has no final newline, which is important
-    // when chaining output.
-    // ---
+    public void setStoppedAtDeadline() {
+        stoppedAtDeadline = true;
+    }
 
-    private String stringifyMatchesCommon(@NotNull String header, @NotNull List<TestResult> list) {
-        final var buf = new StringBuilder();
-        for (TestResult tr : list) {
-            MyPrinting.joinIfNotEmpty(buf, header);
-            final var str1 = tr.stringify();
-            final var str2 = MyPrinting.indent(str1);
-            MyPrinting.joinIfNotEmpty(buf, str2);
-        }
-        return MyPrinting.makeString(buf);
+    public @NotNull Map<MachineName, AimdLimit.History> getLimitHistories() {
+        return limitHistories;
     }
 
-    // ---
-    // This method returns a String that has no final newline, which is important
-    // when chaining output.
-    // ---
+    public void addLimitHistories(@NotNull Map<MachineName, AimdLimit.History> histories) {
+        limitHistories.putAll(histories);
+    }
+
+    public void add(@NotNull TestResult testResult) {
+        add(TestSummary.of(testResult));
+    }
 
-    public String stringify(boolean printMatches) {
-        final var buf = new StringBuilder();
-        if (printMatches && !matches.isEmpty()) {
-            MyPrinting.joinIfNotEmpty(buf, stringifyMatchesCommon("Match:", matches));
+    private void add(@NotNull TestSummary summary) {
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            phaseHistograms.get(phase).add(summary.timings().get(phase));
+        }
+        totalHistogram.add(summary.timings().getTotal());
+        offerSlowest(summary);
+        perMachine.merge(summary.machineName(), summary.match() ? new Counts(1, 0) : new Counts(0, 1), Counts::plus);
+        if (summary.match()) {
+            matchesCount++;
+        } else {
+            mismatchesCount++;
         }
-        if (!mismatches.isEmpty()) {
-            MyPrinting.joinIfNotEmpty(buf, stringifyMatchesCommon("*** Mismatch ***", mismatches));
+        if (summary.deadlineExceeded()) {
+            deadlineExceededCount++;
+        }
+    }
+
+    private void offerSlowest(@NotNull TestSummary summary) {
+        if (slowest.size() < MAX_SLOWEST) {
+            slowest.add(summary);
+        } else if (byTotal.compare(summary, slowest.peek()) > 0) {
+            slowest.poll();
+            slowest.add(summary);
         }
-        return MyPrinting.makeString(buf);
     }
 
     // ---
@@ -99,13 +159,21 @@ public class TestSuiteResults {
     // ---
 
     public static TestSuiteResults merge(@NotNull TestSuiteResults... tsrs) {
-        final List<TestResult> matches = new LinkedList<>();
-        final List<TestResult> mismatches = new LinkedList<>();
+        final TestSuiteResults res = new TestSuiteResults();
         for (TestSuiteResults tsr : tsrs) {
-            matches.addAll(tsr.matches);
-            mismatches.addAll(tsr.mismatches);
+            for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+                res.phaseHistograms.get(phase).addAll(tsr.phaseHistograms.get(phase));
+            }
+            res.totalHistogram.addAll(tsr.totalHistogram);
+            tsr.slowest.forEach(res::offerSlowest);
+            tsr.perMachine.forEach((machineName, counts) -> res.perMachine.merge(machineName, counts, Counts::plus));
+            res.matchesCount += tsr.matchesCount;
+            res.mismatchesCount += tsr.mismatchesCount;
+            res.deadlineExceededCount += tsr.deadlineExceededCount;
+            res.stoppedAtDeadline |= tsr.stoppedAtDeadline;
+            res.limitHistories.putAll(tsr.limitHistories);
         }
-        return new TestSuiteResults(matches, mismatches);
+        return res;
     }
 
 }
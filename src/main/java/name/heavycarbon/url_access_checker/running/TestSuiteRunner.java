@@ -3,25 +3,48 @@ package name.heavycarbon.url_access_checker.running;
 import name.heavycarbon.url_access_checker.building.MachineName;
 import name.heavycarbon.url_access_checker.building.Scheme;
 import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.RequestContext;
 import name.heavycarbon.url_access_checker.http.HttpRequesting;
 import name.heavycarbon.url_access_checker.http.HttpResultInnerFailure;
 import name.heavycarbon.url_access_checker.http.HttpResultInnerSuccess;
 import name.heavycarbon.url_access_checker.http.HttpResultOuter;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import name.heavycarbon.url_access_checker.http.PhaseTimings.Phase;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class TestSuiteRunner {
 
-    private record UriBuildResult(boolean ok, @Nullable URI uri, @NotNull String msg) {
+    // ---
+    // How many TestConfigs the HostScheduler may skip over (and keep) because their
+    // machine is busy, to find one for a machine with a free slot: enough for a slow
+    // machine to lag a fast one by the whole of a large built-in test suite.
+    // ---
+
+    static final int MAX_QUEUED = 10_000;
+
+    // ---
+    // How many results of a machine may wait for an earlier, slower test of the same
+    // machine before no more tests are started against it (see HostScheduler).
+    // ---
+
+    static final int MAX_HELD_BACK_PER_HOST = 256;
+
+    record UriBuildResult(boolean ok, @Nullable URI uri, @NotNull String msg) {
     }
 
     // https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/net/URI.html
 
-    private static @NotNull TestSuiteRunner.UriBuildResult buildURI(@NotNull TestConfig.EndpointData endpointData) {
+    static @NotNull TestSuiteRunner.UriBuildResult buildURI(@NotNull TestConfig.EndpointData endpointData) {
         @NotNull MachineName machineName = endpointData.machineName();
         @NotNull Scheme scheme = endpointData.scheme();
         @NotNull String path = endpointData.path();
@@ -33,7 +56,7 @@ public abstract class TestSuiteRunner {
             return new UriBuildResult(false, null, "Path does not start with '/'");
         }
         try {
-            final var uri = new URI(scheme.toString(), machineName.toString(), tPath, null);
+            final var uri = new URI(scheme.toString(), null, machineName.getHost(), machineName.getPort(), tPath, null, null);
             return new UriBuildResult(true, uri, "OK");
         } catch (URISyntaxException e) {
             String suffix = "";
@@ -44,38 +67,217 @@ public abstract class TestSuiteRunner {
         }
     }
 
-    private static void runSingleTest(@NotNull TestConfig testConfig, @NotNull TestSuiteResults results) {
-        final var uriBuildResult = buildURI(testConfig.getEndpoint());
+    static @NotNull TestSuiteRunner.UriBuildResult buildURI(@NotNull TestConfig.EndpointData endpointData, @NotNull PhaseTimings timings) {
+        final long start = System.nanoTime();
+        final UriBuildResult res = buildURI(endpointData);
+        timings.add(PhaseTimings.Phase.uri_build, System.nanoTime() - start);
+        return res;
+    }
+
+    // ---
+    // Run a single test, returning the TestResult (which may indicate a match or a mismatch).
+    // This may be called concurrently from several threads.
+    // ---
+
+    private static @NotNull TestResult runSingleTest(@NotNull TestConfig testConfig, @NotNull RequestContext requestContext) {
+        final var timings = new PhaseTimings();
+        final var uriBuildResult = buildURI(testConfig.getEndpoint(), timings);
         if (!uriBuildResult.ok()) {
-            results.addToMismatches(new TestResult(testConfig.getMethodName(), uriBuildResult.msg()));
+            return new TestResult(testConfig, uriBuildResult.msg(), timings);
         } else {
             assert uriBuildResult.uri() != null;
             final var uri = uriBuildResult.uri();
             // ---->
-            final var httpResultOuter = HttpRequesting.performHttpRequestAndCheckResponse(uri, testConfig);
+            final var httpResultOuter = HttpRequesting.performHttpRequestAndCheckResponse(uri, testConfig, requestContext, timings);
             // <---
-            if (httpResultOuter.getTestOutcome() == HttpResultOuter.TestOutcome.request_failure) {
-                assert httpResultOuter.getHttpResultInner() instanceof HttpResultInnerFailure;
-            } else {
-                assert httpResultOuter.getHttpResultInner() instanceof HttpResultInnerSuccess;
-            }
-            final var tr = new TestResult(uri,
-                    testConfig, // already contains method name
-                    httpResultOuter,
-                    httpResultOuter.getMsg());
-            switch (httpResultOuter.getTestOutcome()) {
-                case body_mismatch, http_status_mismatch, request_failure -> results.addToMismatches(tr);
-                case match -> results.addToMatches(tr);
-                default -> throw new IllegalStateException("Unhandled code: " + httpResultOuter.getTestOutcome());
-            }
+            return buildTestResult(uri, testConfig, httpResultOuter, timings);
         }
     }
 
-    public static TestSuiteResults runTestSuite(@NotNull List<TestConfig> testSuite) {
+    // Also used by the AsyncTestSuiteRunner
+
+    static @NotNull TestResult buildTestResult(@NotNull URI uri, @NotNull TestConfig testConfig, @NotNull HttpResultOuter httpResultOuter, @NotNull PhaseTimings timings) {
+        final HttpResultOuter.TestOutcome outcome = httpResultOuter.getTestOutcome();
+        if (outcome == HttpResultOuter.TestOutcome.request_failure || outcome == HttpResultOuter.TestOutcome.deadline_exceeded) {
+            assert httpResultOuter.getHttpResultInner() instanceof HttpResultInnerFailure;
+        } else {
+            assert httpResultOuter.getHttpResultInner() instanceof HttpResultInnerSuccess;
+        }
+        return new TestResult(uri,
+                testConfig, // already contains method name
+                httpResultOuter,
+                httpResultOuter.getMsg(),
+                timings);
+    }
+
+    // ---
+    // Run the tests one after the other, in the order of the suite.
+    // Each TestResult goes to the "sink" as soon as the test is over.
+    // The HttpClients are taken from "requestContext", which is managed by the caller.
+    // Once the Deadline of the "requestContext" has passed, no more tests are started.
+    // ---
+
+    public static TestSuiteResults runTestSuite(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, @NotNull ResultSink sink) {
         final TestSuiteResults results = new TestSuiteResults();
         for (TestConfig testConfig : testSuite) {
             assert testConfig != null;
-            runSingleTest(testConfig, results);
+            if (requestContext.getDeadline().isExpired()) {
+                results.setStoppedAtDeadline();
+                break;
+            }
+            final TestResult testResult = runSingleTest(testConfig, requestContext);
+            try {
+                sink.accept(testResult);
+            } finally {
+                testResult.releaseBody();
+            }
+            results.add(testResult);
+        }
+        return results;
+    }
+
+    // ---
+    // Hands the TestResults of a concurrent run to the sink in the order of the suite,
+    // machine by machine: a result that terminates early waits here until all the
+    // results for the same machine before it have been handed over. Results for
+    // different machines do not wait for each other, so a slow machine does not hold
+    // up the output of the others. A test frees its "inFlight" permit and its slot in
+    // the HostScheduler as soon as it is over, so a slow test does not keep the others
+    // from starting. Each handed-over result is reported as delivered() to the
+    // HostScheduler, which starts no more tests against a machine that has
+    // MAX_HELD_BACK_PER_HOST results waiting here.
+    // This runs on virtual threads and calls the sink, which prints, so it locks with a
+    // ReentrantLock: a virtual thread waiting at a "synchronized" would keep its carrier.
+    // ---
+
+    private static class InOrderDelivery {
+
+        private static class HostQueue {
+            private final @NotNull Map<Integer, TestResult> waiting = new HashMap<>();
+            private int next = 0;
+        }
+
+        private final @NotNull ResultSink sink;
+        private final @NotNull TestSuiteResults results;
+        private final @NotNull HostScheduler scheduler;
+        private final @NotNull Map<MachineName, HostQueue> queues = new HashMap<>();
+        private final @NotNull ReentrantLock lock = new ReentrantLock();
+        private @Nullable RuntimeException sinkFailure = null; // once the sink has failed, it is not called again
+
+        InOrderDelivery(@NotNull ResultSink sink, @NotNull TestSuiteResults results, @NotNull HostScheduler scheduler) {
+            this.sink = sink;
+            this.results = results;
+            this.scheduler = scheduler;
+        }
+
+        // "index" counts the tests of "machineName", in the order in which they were started
+
+        void deliver(@NotNull MachineName machineName, int index, @NotNull TestResult testResult) {
+            lock.lock();
+            try {
+                final HostQueue queue = queues.computeIfAbsent(machineName, mn -> new HostQueue());
+                queue.waiting.put(index, testResult);
+                TestResult head;
+                while ((head = queue.waiting.remove(queue.next)) != null) {
+                    queue.next++;
+                    try {
+                        results.add(head);
+                        if (sinkFailure == null) {
+                            sink.accept(head);
+                        }
+                    } catch (RuntimeException exe) {
+                        sinkFailure = exe;
+                    } finally {
+                        head.releaseBody();
+                        scheduler.delivered(machineName);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // the sink runs on the tests' virtual threads, where an exception would just disappear
+
+        void rethrowSinkFailure() {
+            lock.lock();
+            try {
+                if (sinkFailure != null) {
+                    throw sinkFailure;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ---
+    // Run the tests concurrently, each on its own virtual thread.
+    // At most "parallelism" tests are in flight overall, and at most "maxInFlightPerHost"
+    // tests are in flight against any given MachineName. Which test starts next is decided
+    // by a HostScheduler, which skips the machines that have no free slot.
+    // The executor is closed at the end of the try-with-resources block, which waits for
+    // all the tests to terminate, so no thread outlives this method.
+    // The TestResults for a machine reach the "sink" in the order of the suite, so for a
+    // suite against a single machine the output is the same as for a sequential run, no
+    // matter in which order the tests terminate.
+    // With "adaptive", "maxInFlightPerHost" is only the ceiling of an AimdLimit per machine.
+    // Once the Deadline of the "requestContext" has passed, no more tests are started; the
+    // tests in flight end by the Deadline too, as their timeouts are capped to it.
+    // ---
+
+    public static TestSuiteResults runTestSuite(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, @NotNull ResultSink sink, int parallelism, int maxInFlightPerHost) {
+        return runTestSuite(testSuite, requestContext, sink, parallelism, maxInFlightPerHost, false);
+    }
+
+    public static TestSuiteResults runTestSuite(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, @NotNull ResultSink sink, int parallelism, int maxInFlightPerHost, boolean adaptive) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The 'parallelism' must be at least 1, but is " + parallelism);
+        }
+        if (parallelism == 1) {
+            return runTestSuite(testSuite, requestContext, sink);
+        }
+        final TestSuiteResults results = new TestSuiteResults();
+        final Semaphore inFlight = new Semaphore(parallelism);
+        final HostScheduler scheduler = new HostScheduler(testSuite.iterator(), maxInFlightPerHost, adaptive, MAX_QUEUED, MAX_HELD_BACK_PER_HOST);
+        final InOrderDelivery delivery = new InOrderDelivery(sink, results, scheduler);
+        final Map<MachineName, Integer> startedPerHost = new HashMap<>();
+        boolean stoppedAtDeadline = false;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                inFlight.acquireUninterruptibly();
+                if (requestContext.getDeadline().isExpired()) {
+                    stoppedAtDeadline = !scheduler.isExhausted();
+                    break;
+                }
+                final TestConfig testConfig = scheduler.take();
+                if (testConfig == null) {
+                    break;
+                }
+                final MachineName machineName = testConfig.getEndpoint().machineName();
+                final int index = startedPerHost.merge(machineName, 1, Integer::sum) - 1;
+                executor.submit(() -> {
+                    TestResult testResult;
+                    try {
+                        testResult = runSingleTest(testConfig, requestContext);
+                    } catch (RuntimeException | AssertionError exe) {
+                        // a result must be delivered for every test, or the ones after it never would be
+                        // (an AssertionError too, as the tests run with assertions enabled)
+                        testResult = new TestResult(testConfig, "Test could not be run: " + exe, new PhaseTimings());
+                    }
+                    // the slot is free now, even if the result has to wait for an earlier one
+                    final var outer = testResult.getHttpResultOuter();
+                    final LoadSignal signal = LoadSignal.of((outer != null) ? outer.getHttpResultInner() : null);
+                    scheduler.release(machineName, signal, testResult.getTimings().get(Phase.headers));
+                    inFlight.release();
+                    delivery.deliver(machineName, index, testResult);
+                });
+            }
+        }
+        delivery.rethrowSinkFailure();
+        results.addLimitHistories(scheduler.getLimitHistories());
+        if (stoppedAtDeadline) {
+            results.setStoppedAtDeadline();
         }
         return results;
     }
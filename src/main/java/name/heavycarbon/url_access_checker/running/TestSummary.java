@@ -0,0 +1,27 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.MethodName;
+import name.heavycarbon.url_access_checker.http.HttpResultOuter;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+
+// ---
+// What is kept of a TestResult once it has been handed to the ResultSink:
+// just enough for the final summary and the timing report. The HTTP response
+// (with its body) is not retained.
+// "uri" is null if the URI couldn't be built.
+// "deadlineExceeded" if the test was cut short by the run's Deadline.
+// ---
+
+public record TestSummary(@NotNull MethodName methodName, @NotNull MachineName machineName, @Nullable URI uri, boolean match, boolean deadlineExceeded, @NotNull PhaseTimings timings) {
+
+    public static @NotNull TestSummary of(@NotNull TestResult testResult) {
+        final HttpResultOuter outer = testResult.getHttpResultOuter();
+        final boolean deadlineExceeded = outer != null && outer.getTestOutcome() == HttpResultOuter.TestOutcome.deadline_exceeded;
+        return new TestSummary(testResult.getMethodName(), testResult.getMachineName(), testResult.getUri(), testResult.isMatch(), deadlineExceeded, testResult.getTimings());
+    }
+}
@@ -0,0 +1,59 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import org.jetbrains.annotations.NotNull;
+
+// ---
+// Summarizes the PhaseTimings of all the tests of a run: for each phase the
+// 50th, 90th and 99th percentile (nearest-rank, from a LatencyHistogram, so
+// within 1 % of the exact value) and the maximum, then the slowest tests (by
+// total time, at most TestSuiteResults.MAX_SLOWEST).
+// ---
+
+public abstract class TimingReport {
+
+    private static @NotNull String stringifyPhases(@NotNull TestSuiteResults results) {
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, String.format("%-16s %12s %12s %12s %12s", "Phase", "p50", "p90", "p99", "max"));
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            final LatencyHistogram histogram = results.getHistogram(phase);
+            MyPrinting.joinIfNotEmpty(buf, String.format("%-16s %12s %12s %12s %12s", phase,
+                    PhaseTimings.toMillis(histogram.percentile(50)),
+                    PhaseTimings.toMillis(histogram.percentile(90)),
+                    PhaseTimings.toMillis(histogram.percentile(99)),
+                    PhaseTimings.toMillis(histogram.getMax())));
+        }
+        return MyPrinting.makeString(buf);
+    }
+
+    private static @NotNull String stringifySlowest(@NotNull TestSuiteResults results, int slowestCount) {
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, "Slowest tests");
+        results.getSlowest().stream()
+                .limit(slowestCount)
+                .forEach(ts -> {
+                    final String where = (ts.uri() != null) ? ts.uri().toString() : "(no URI)";
+                    final String line = String.format("%12s  %s  %s", PhaseTimings.toMillis(ts.timings().getTotal()), ts.methodName().name(), where);
+                    MyPrinting.joinIfNotEmpty(buf, MyPrinting.indent(line));
+                });
+        return MyPrinting.makeString(buf);
+    }
+
+    // ---
+    // This method returns a String that has no final newline, which is important
+    // when chaining output. Empty if no tests have been run.
+    // ---
+
+    public static @NotNull String stringify(@NotNull TestSuiteResults results, int slowestCount) {
+        if (results.isEmpty()) {
+            return "";
+        }
+        final var buf = new StringBuilder();
+        MyPrinting.joinIfNotEmpty(buf, stringifyPhases(results));
+        if (slowestCount > 0) {
+            MyPrinting.joinIfNotEmpty(buf, stringifySlowest(results, slowestCount));
+        }
+        return MyPrinting.makeString(buf);
+    }
+}
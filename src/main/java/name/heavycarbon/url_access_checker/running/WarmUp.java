@@ -0,0 +1,99 @@
+package name.heavycarbon.url_access_checker.running;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.Scheme;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.HttpRequesting;
+import name.heavycarbon.url_access_checker.http.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+
+ Before the first test runs, opens the connections that the tests will use, all at
+ once: the host names get resolved (and pinned, see DnsPinning), the TCP connections
+ opened and the TLS handshakes done, so that none of this is booked on the tests.
+
+ > suite (first LOOKAHEAD tests) --> targets: (machine, scheme, credentials)
+ >                                     |
+ >                                     +--> "connectionsPerTarget" concurrent HEAD requests to "/" each
+ >                                          --> connections left in the HttpClients' pools
+
+ A target is what decides on the HttpClient and the connection pool: with challenge-based
+ authentication, each set of credentials has its own HttpClient, with preemptive
+ authentication, all share one. The answers to the HEAD requests do not matter. With
+ HTTP/2, one connection per target is enough, as the requests are multiplexed over it.
+
+ The suite is iterated a first time for this, which for a SuiteFile means reading the
+ beginning of the file twice.
+ */
+
+public abstract class WarmUp {
+
+    static final int LOOKAHEAD = 1000;
+
+    private record Target(@NotNull MachineName machineName, @NotNull Scheme scheme, @Nullable TestConfig.CredData credData) {
+    }
+
+    // ---
+    // What the warm-up did, reported separately from the tests.
+    // ---
+
+    public record Result(int machines, int connections, int failed, long nanos) {
+
+        // This method returns a String that has no final newline, which is important
+        // when chaining output.
+
+        public @NotNull String stringify() {
+            return String.format("Warm-up           : %d connections to %d machine(s) in %.3f ms, %d failed",
+                    connections, machines, nanos / 1_000_000.0, failed);
+        }
+    }
+
+    private static @NotNull Map<Target, TestConfig> findTargets(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext) {
+        final boolean preemptiveAuth = requestContext.getClientRegistry().isPreemptiveAuth();
+        final Map<Target, TestConfig> targets = new LinkedHashMap<>();
+        final Iterator<TestConfig> iterator = testSuite.iterator();
+        for (int i = 0; i < LOOKAHEAD && iterator.hasNext(); i++) {
+            final TestConfig testConfig = iterator.next();
+            final TestConfig.EndpointData endpoint = testConfig.getEndpoint();
+            final var target = new Target(endpoint.machineName(), endpoint.scheme(), preemptiveAuth ? null : testConfig.getCredData());
+            targets.putIfAbsent(target, testConfig);
+        }
+        return targets;
+    }
+
+    // ---
+    // Blocks until all the warm-up requests are over. A target whose URI cannot be built
+    // is skipped, its tests will say why.
+    // ---
+
+    public static @NotNull Result run(@NotNull Iterable<TestConfig> testSuite, @NotNull RequestContext requestContext, int connectionsPerTarget) {
+        final long start = System.nanoTime();
+        final Map<Target, TestConfig> targets = findTargets(testSuite, requestContext);
+        final List<CompletableFuture<Boolean>> requests = new ArrayList<>();
+        for (Map.Entry<Target, TestConfig> entry : targets.entrySet()) {
+            final Target target = entry.getKey();
+            final var uriBuildResult = TestSuiteRunner.buildURI(new TestConfig.EndpointData(target.machineName(), target.scheme(), "/"));
+            if (!uriBuildResult.ok()) {
+                continue;
+            }
+            assert uriBuildResult.uri() != null;
+            final int count = requestContext.getClientRegistry().isHttp2(target.scheme()) ? 1 : connectionsPerTarget;
+            for (int i = 0; i < count; i++) {
+                requests.add(HttpRequesting.warmUpAsync(uriBuildResult.uri(), entry.getValue(), requestContext));
+            }
+        }
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+        final int failed = (int) requests.stream().filter(r -> !r.join()).count();
+        final int machines = (int) targets.keySet().stream().map(Target::machineName).distinct().count();
+        return new Result(machines, requests.size() - failed, failed, System.nanoTime() - start);
+    }
+}
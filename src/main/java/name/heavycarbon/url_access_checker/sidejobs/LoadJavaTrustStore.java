@@ -8,23 +8,58 @@ import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // https://docs.oracle.com/en/java/javase/21/docs/api//java.base/java/security/KeyStore.html
+// https://docs.oracle.com/en/java/javase/21/security/java-secure-socket-extension-jsse-reference-guide.html (for the lookup order)
+
+// ---
+// Each trust store is loaded from disk once per JVM and then kept in memory, as reading
+// and parsing the some 150 certificates of "cacerts" is not cheap. A failure to load is
+// kept as well.
+// ---
 
 public class LoadJavaTrustStore {
 
     private final static Path cacertsPath = Path.of(System.getProperty("java.home"), "lib", "security", "cacerts");
+    private final static Path jssecacertsPath = Path.of(System.getProperty("java.home"), "lib", "security", "jssecacerts");
     private final static String password = "changeit";
 
+    private final static Map<Path, LoadTrustStoreResult> loaded = new ConcurrentHashMap<>();
+
     public static @NotNull LoadTrustStoreResult loadJavaTrustStore() {
+        return loaded.computeIfAbsent(cacertsPath, path -> load(path, "The JDK/JRE's 'cacerts' PKCS#12 file containing 'trusted certificates'", password, KeyStore.getDefaultType()));
+    }
+
+    // ---
+    // The trust store that the JDK's default SSLContext would use: the one named by the
+    // "javax.net.ssl.trustStore" property (with "javax.net.ssl.trustStorePassword" and
+    // "javax.net.ssl.trustStoreType"), else "jssecacerts" if there is one, else "cacerts".
+    // ---
+
+    public static @NotNull LoadTrustStoreResult loadDefaultTrustStore() {
+        final String configured = System.getProperty("javax.net.ssl.trustStore");
+        if (configured != null && !configured.isEmpty() && !configured.equals("NONE")) {
+            final String configuredPassword = System.getProperty("javax.net.ssl.trustStorePassword", "");
+            final String configuredType = System.getProperty("javax.net.ssl.trustStoreType", KeyStore.getDefaultType());
+            return loaded.computeIfAbsent(Path.of(configured), path -> load(path, "The trust store given by 'javax.net.ssl.trustStore'", configuredPassword, configuredType));
+        }
+        if (jssecacertsPath.toFile().isFile()) {
+            return loaded.computeIfAbsent(jssecacertsPath, path -> load(path, "The JDK/JRE's 'jssecacerts' file containing 'trusted certificates'", password, KeyStore.getDefaultType()));
+        }
+        return loadJavaTrustStore();
+    }
+
+    private static @NotNull LoadTrustStoreResult load(@NotNull Path path, @NotNull String what, @NotNull String storePassword, @NotNull String type) {
         StringBuilder buf = new StringBuilder();
-        buf.append("The JDK/JRE's 'cacerts' PKCS#12 file containing 'trusted certificates' should be here: ");
-        buf.append(cacertsPath);
-        try (FileInputStream is = new FileInputStream(cacertsPath.toFile())) {
-            KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+        buf.append(what).append(" should be here: ");
+        buf.append(path);
+        try (FileInputStream is = new FileInputStream(path.toFile())) {
+            KeyStore keystore = KeyStore.getInstance(type);
             // It turns out that the PKCS#12 file is not password protected by default.
             // So any password is ok.
-            keystore.load(is, password.toCharArray());
+            keystore.load(is, storePassword.toCharArray());
             buf.append("\n");
             buf.append("File opened. Its size is ");
             buf.append(keystore.size());
@@ -32,7 +67,7 @@ public class LoadJavaTrustStore {
             return new LoadTrustStoreResult(true, keystore, buf.toString());
         } catch (Exception exe) {
             // a lot can go wrong
-            appendException(buf, "Problem handling the 'cacerts' file!", exe);
+            appendException(buf, "Problem handling the trust store file!", exe);
             return new LoadTrustStoreResult(false, null, buf.toString());
         }
     }
@@ -0,0 +1,122 @@
+package name.heavycarbon.url_access_checker.stub;
+
+import name.heavycarbon.url_access_checker.building.MachineName;
+import name.heavycarbon.url_access_checker.building.Scheme;
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.http.FetchPolicy;
+import name.heavycarbon.url_access_checker.http.HttpClientRegistry;
+import name.heavycarbon.url_access_checker.http.PhaseTimings;
+import name.heavycarbon.url_access_checker.http.RequestContext;
+import name.heavycarbon.url_access_checker.printing.MyPrinting;
+import name.heavycarbon.url_access_checker.running.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+// ---
+// Runs a test suite against a StubServer with each of the runners (sequential, parallel
+// on virtual threads, non-blocking pipeline) and each way of authenticating (on challenge,
+// preemptive), and reports tests/s, HTTP requests/s (as seen by the server, so including
+// the authentication round-trips) and the latency percentiles of the tests.
+//
+// The stub speaks plain HTTP/1.1 only, so the endpoints of the test suite are switched to
+// "http": neither TLS (handshakes, session resumption) nor HTTP/2 is part of the comparison
+// (we don't do "h2c"). Those need a real server.
+//
+// Each combination gets fresh HttpClients, runs the suite once to warm up, then runs it
+// "repeat" times in a row for the measurement.
+// ---
+
+public abstract class EndToEndBenchmark {
+
+    public record Settings(@NotNull Duration latency, int bodySize, int repeat, int parallelism, int maxInFlightPerHost, long maxBodyBytes) {
+    }
+
+    private record Combination(@NotNull String runnerName, @NotNull Engine engine, int parallelism, boolean preemptiveAuth) {
+    }
+
+    private static @NotNull List<Combination> buildCombinations(int parallelism) {
+        final List<Combination> res = new ArrayList<>();
+        for (boolean preemptiveAuth : new boolean[]{false, true}) {
+            res.add(new Combination("sequential", Engine.blocking, 1, preemptiveAuth));
+            res.add(new Combination("virtual threads", Engine.blocking, parallelism, preemptiveAuth));
+            res.add(new Combination("async", Engine.async, parallelism, preemptiveAuth));
+        }
+        return res;
+    }
+
+    private static @NotNull List<TestConfig> switchToHttp(@NotNull List<TestConfig> testSuite) {
+        return testSuite.stream()
+                .map(tc -> tc.withEndpoint(new TestConfig.EndpointData(tc.getEndpoint().machineName(), Scheme.http, tc.getEndpoint().path())))
+                .toList();
+    }
+
+    // the results are not printed, only the TestSuiteResults are of interest
+
+    private static @NotNull TestSuiteResults runOnce(@NotNull List<TestConfig> testSuite, @NotNull Combination combination, @NotNull RequestContext requestContext, int maxInFlightPerHost) {
+        final ResultSink sink = testResult -> {
+        };
+        return switch (combination.engine()) {
+            case blocking -> TestSuiteRunner.runTestSuite(testSuite, requestContext, sink, combination.parallelism(), maxInFlightPerHost);
+            case async -> AsyncTestSuiteRunner.runTestSuite(testSuite, requestContext, sink, combination.parallelism(), maxInFlightPerHost);
+        };
+    }
+
+    private static @NotNull String runCombination(@NotNull List<TestConfig> testSuite, @NotNull Combination combination, @NotNull Settings settings, @NotNull StubServer server) {
+        final List<TestConfig> repeated = new ArrayList<>();
+        for (int i = 0; i < settings.repeat(); i++) {
+            repeated.addAll(testSuite);
+        }
+        final var fetchPolicy = new FetchPolicy(false, settings.maxBodyBytes());
+        try (RequestContext requestContext = new RequestContext(new HttpClientRegistry(false, combination.preemptiveAuth()), fetchPolicy, false, false)) {
+            runOnce(testSuite, combination, requestContext, settings.maxInFlightPerHost()); // warm-up
+            final long requestsBefore = server.getRequestsServed();
+            final long start = System.nanoTime();
+            final TestSuiteResults results = runOnce(repeated, combination, requestContext, settings.maxInFlightPerHost());
+            final double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            final long requests = server.getRequestsServed() - requestsBefore;
+            final LatencyHistogram latencies = results.getTotalHistogram();
+            return String.format(Locale.ROOT, "%-20s %-12s %6d %6d %10.1f %10.1f %12s %12s %12s %12s",
+                    combination.runnerName() + ((combination.parallelism() > 1) ? " x" + combination.parallelism() : ""),
+                    combination.preemptiveAuth() ? "preemptive" : "challenge",
+                    latencies.getCount(),
+                    results.getMismatchesCount(),
+                    latencies.getCount() / seconds,
+                    requests / seconds,
+                    PhaseTimings.toMillis(latencies.percentile(50)),
+                    PhaseTimings.toMillis(latencies.percentile(90)),
+                    PhaseTimings.toMillis(latencies.percentile(99)),
+                    PhaseTimings.toMillis(latencies.getMax()));
+        }
+    }
+
+    // ---
+    // "suiteBuilder" builds the test suite for the given machine (which is the stub server).
+    // This method returns a String that has no final newline, which is important
+    // when chaining output.
+    // ---
+
+    public static @NotNull String run(@NotNull Function<MachineName, List<TestConfig>> suiteBuilder, @NotNull Settings settings) throws IOException {
+        // TCP_NODELAY for the StubServer; read when the first HttpServer of the JVM is created
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        try (StubServer server = new StubServer(settings.latency(), settings.bodySize())) {
+            server.start();
+            final List<TestConfig> testSuite = switchToHttp(suiteBuilder.apply(new MachineName("localhost:" + server.getPort())));
+            server.setPolicy(StubPolicy.fromTestSuite(testSuite));
+            final var buf = new StringBuilder();
+            MyPrinting.joinIfNotEmpty(buf, "Stub server on port " + server.getPort() + ", latency " + settings.latency().toMillis() + " ms, pages of about " + settings.bodySize() + " bytes");
+            MyPrinting.joinIfNotEmpty(buf, "Test suite of " + testSuite.size() + " tests, run " + settings.repeat() + " times per combination");
+            MyPrinting.joinIfNotEmpty(buf, String.format(Locale.ROOT, "%-20s %-12s %6s %6s %10s %10s %12s %12s %12s %12s",
+                    "Runner", "Auth", "Tests", "Mism.", "Tests/s", "Requests/s", "p50", "p90", "p99", "max"));
+            for (Combination combination : buildCombinations(settings.parallelism())) {
+                MyPrinting.joinIfNotEmpty(buf, runCombination(testSuite, combination, settings, server));
+            }
+            return MyPrinting.makeString(buf);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package name.heavycarbon.url_access_checker.stub;
+
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+// ---
+// HTML pages looking roughly like the ones Apache serves. The body strings a test looks
+// for are always added, so that the page matches whatever the test suite expects.
+// ---
+
+abstract class StubPages {
+
+    private static void appendHead(@NotNull StringBuilder buf, @NotNull String title) {
+        buf.append("<!DOCTYPE HTML PUBLIC \"-//IETF//DTD HTML 2.0//EN\">\n");
+        buf.append("<html><head>\n<title>").append(title).append("</title>\n</head><body>\n");
+    }
+
+    private static void appendTail(@NotNull StringBuilder buf, @NotNull List<String> bodyStrings, @NotNull String host) {
+        for (String str : bodyStrings) {
+            buf.append("<p>").append(str).append("</p>\n");
+        }
+        buf.append("<hr>\n<address>Apache Server at ").append(host).append("</address>\n</body></html>\n");
+    }
+
+    // ---
+    // An "Index of" listing, padded with entries to about "size" chars.
+    // ---
+
+    private static void appendListing(@NotNull StringBuilder buf, @NotNull String path, int size) {
+        buf.append("<h1>Index of ").append(path).append("</h1>\n");
+        buf.append("<table>\n<tr><th>Name</th><th>Last modified</th><th>Size</th></tr>\n");
+        buf.append("<tr><td><a href=\"../\">Parent Directory</a></td><td>&nbsp;</td><td>-</td></tr>\n");
+        int i = 0;
+        while (buf.length() < size) {
+            buf.append("<tr><td><a href=\"file_").append(i).append(".txt\">file_").append(i).append(".txt</a></td>");
+            buf.append("<td>2024-06-01 12:00</td><td>").append((i * 37) % 9999).append("</td></tr>\n");
+            i++;
+        }
+        buf.append("</table>\n");
+    }
+
+    private static void appendFiller(@NotNull StringBuilder buf, int size) {
+        while (buf.length() < size) {
+            buf.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.</p>\n");
+        }
+    }
+
+    // ---
+    // "size" is the approximate size of "200 OK" pages, error pages are short as with Apache.
+    // ---
+
+    static @NotNull String build(@NotNull HttpStatusCode code, @NotNull String path, @NotNull String host, @NotNull List<String> bodyStrings, int size) {
+        final var buf = new StringBuilder(Math.max(size, 0) + 1024);
+        if (code.equals(HttpStatusCode.ok)) {
+            if (path.endsWith("/")) {
+                appendHead(buf, "Index of " + path);
+                appendListing(buf, path, size);
+            } else {
+                appendHead(buf, path);
+                appendFiller(buf, size);
+            }
+        } else if (code.equals(HttpStatusCode.moved)) {
+            appendHead(buf, "301 Moved Permanently");
+            buf.append("<h1>Moved Permanently</h1>\n<p>The document has moved <a href=\"").append(path).append("/\">here</a>.</p>\n");
+        } else if (code.equals(HttpStatusCode.unauthorized)) {
+            appendHead(buf, "401 Unauthorized");
+            buf.append("<h1>Unauthorized</h1>\n<p>This server could not verify that you are authorized to access the document requested.</p>\n");
+        } else if (code.equals(HttpStatusCode.forbidden)) {
+            appendHead(buf, "403 Forbidden");
+            buf.append("<h1>Forbidden</h1>\n<p>You don't have permission to access this resource.</p>\n");
+        } else if (code.equals(HttpStatusCode.missing)) {
+            appendHead(buf, "404 Not Found");
+            buf.append("<h1>Not Found</h1>\n<p>The requested URL was not found on this server.</p>\n");
+        } else {
+            appendHead(buf, code.toStringWithText());
+            buf.append("<h1>").append(code.toStringWithText()).append("</h1>\n");
+        }
+        appendTail(buf, bodyStrings, host);
+        return buf.toString();
+    }
+}
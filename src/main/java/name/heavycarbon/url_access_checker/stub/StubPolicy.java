@@ -0,0 +1,107 @@
+package name.heavycarbon.url_access_checker.stub;
+
+import name.heavycarbon.url_access_checker.building.TestConfig;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+// ---
+// What the StubServer answers, derived from the TestConfigs of a test suite so that
+// a correct server makes every test match. For every path, the TestConfigs say what is
+// expected with no, good and bad credentials. The answer is given the way Apache gives it:
+//
+// - A path is protected if it is expected to be "401 Unauthorized" without credentials.
+//   For a protected path, a request without credentials or with credentials other than
+//   the good ones is challenged with "401 Unauthorized" (which the checker reports as
+//   "403 Forbidden" for bad credentials, see HttpRequesting), a request with the good
+//   credentials gets what the TestConfig with good credentials expects.
+// - For any other path, the credentials are disregarded and the request gets what the
+//   TestConfig without credentials expects.
+// - An unknown path is "404 Not Found".
+//
+// If a TestConfig accepts several status codes, the stub picks one that is not
+// "500 Internal Server Error" (which is only accepted in case the wiki is down).
+// ---
+
+public class StubPolicy {
+
+    public record Answer(@NotNull HttpStatusCode httpStatusCode, @NotNull List<String> bodyStrings) {
+    }
+
+    private static class Route {
+
+        private final @NotNull Map<TestConfig.WhatCreds, Answer> answers = new EnumMap<>(TestConfig.WhatCreds.class);
+        private @Nullable Credentials goodCreds;
+
+        boolean isProtected() {
+            final Answer none = answers.get(TestConfig.WhatCreds.none);
+            return none != null && none.httpStatusCode().equals(HttpStatusCode.unauthorized);
+        }
+
+        @NotNull Answer getAnswerIgnoringCreds() {
+            final Answer none = answers.get(TestConfig.WhatCreds.none);
+            return (none != null) ? none : answers.values().iterator().next();
+        }
+    }
+
+    private static final Answer unauthorized = new Answer(HttpStatusCode.unauthorized, List.of());
+    private static final Answer missing = new Answer(HttpStatusCode.missing, List.of());
+
+    private final @NotNull Map<String, Route> routes;
+
+    private StubPolicy(@NotNull Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    private static @NotNull HttpStatusCode pickStatusCode(@NotNull Set<HttpStatusCode> expectedSet) {
+        return expectedSet.stream()
+                .filter(code -> !code.equals(HttpStatusCode.internal_server_error))
+                .findFirst()
+                .orElse(HttpStatusCode.internal_server_error);
+    }
+
+    // ---
+    // If several TestConfigs concern the same path and credentials, the first one wins.
+    // ---
+
+    public static @NotNull StubPolicy fromTestSuite(@NotNull List<TestConfig> testSuite) {
+        final Map<String, Route> routes = new HashMap<>();
+        for (TestConfig testConfig : testSuite) {
+            final Route route = routes.computeIfAbsent(testConfig.getEndpoint().path().trim(), path -> new Route());
+            final TestConfig.CredData credData = testConfig.getCredData();
+            final List<String> bodyStrings = testConfig.getOptions().isBodyStringsSet() ? testConfig.getOptions().getBodyStrings() : List.of();
+            assert bodyStrings != null;
+            route.answers.putIfAbsent(credData.what(), new Answer(pickStatusCode(testConfig.getExpectedSet()), bodyStrings));
+            if (credData.what() == TestConfig.WhatCreds.good && route.goodCreds == null) {
+                route.goodCreds = credData.creds();
+            }
+        }
+        return new StubPolicy(routes);
+    }
+
+    // ---
+    // "creds" are the credentials sent with the request, null if there were none.
+    // ---
+
+    public @NotNull Answer decide(@NotNull String path, @Nullable Credentials creds) {
+        final Route route = routes.get(path);
+        if (route == null) {
+            return missing;
+        }
+        if (!route.isProtected()) {
+            return route.getAnswerIgnoringCreds();
+        }
+        if (creds == null) {
+            return route.getAnswerIgnoringCreds(); // which is 401
+        }
+        final Answer good = route.answers.get(TestConfig.WhatCreds.good);
+        if (good != null && creds.equals(route.goodCreds)) {
+            return good;
+        } else {
+            return unauthorized;
+        }
+    }
+}
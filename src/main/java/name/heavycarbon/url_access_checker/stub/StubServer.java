@@ -0,0 +1,132 @@
+package name.heavycarbon.url_access_checker.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import name.heavycarbon.url_access_checker.credentials.Credentials;
+import name.heavycarbon.url_access_checker.http.HttpStatusCode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ---
+// A stand-in for the real Apache, to benchmark the checker without going to production
+// hosts. Built on the JDK's own com.sun.net.httpserver, plain HTTP only, listening on the
+// loopback interface on a free port. Each request is handled on its own virtual thread,
+// waits "latency" and is then answered according to the StubPolicy.
+//
+// The server writes the headers and the body of a response separately. With Nagle's
+// algorithm on, the body then waits for the client's delayed ACK, which adds about 40 ms
+// to every request. Hence TCP_NODELAY, which the server only takes from the system property
+// "sun.net.httpserver.nodelay"; the EndToEndBenchmark sets it.
+//
+// The constructor binds the port, start() starts serving. As the policy is derived from a
+// test suite that is built for the server's port, the server is started first and is given
+// the policy afterward. Until then, it answers "503 Service Unavailable".
+// ---
+
+public class StubServer implements AutoCloseable {
+
+    private final @NotNull HttpServer server;
+    private final @NotNull ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final @NotNull Duration latency;
+    private final int bodySize;
+    private final @NotNull AtomicLong requestsServed = new AtomicLong();
+    private volatile @Nullable StubPolicy policy;
+
+    public StubServer(@NotNull Duration latency, int bodySize) throws IOException {
+        this.latency = latency;
+        this.bodySize = bodySize;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void setPolicy(@NotNull StubPolicy policy) {
+        this.policy = policy;
+    }
+
+    public long getRequestsServed() {
+        return requestsServed.get();
+    }
+
+    // ---
+    // Anything that does not properly decode as Basic credentials counts as "no credentials".
+    // ---
+
+    private static @Nullable Credentials decodeCreds(@Nullable String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Basic ", 0, "Basic ".length())) {
+            return null;
+        }
+        try {
+            final String userPass = new String(Base64.getDecoder().decode(authorization.substring("Basic ".length()).trim()), StandardCharsets.UTF_8);
+            final int colon = userPass.indexOf(':');
+            return (colon < 0) ? null : new Credentials(userPass.substring(0, colon), userPass.substring(colon + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requestsServed.incrementAndGet();
+            if (!latency.isZero()) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            final String path = exchange.getRequestURI().getPath();
+            final String hostHeader = exchange.getRequestHeaders().getFirst("Host");
+            final String host = (hostHeader != null) ? hostHeader : "localhost:" + getPort();
+            final StubPolicy currentPolicy = policy;
+            final StubPolicy.Answer answer = (currentPolicy != null)
+                    ? currentPolicy.decide(path, decodeCreds(exchange.getRequestHeaders().getFirst("Authorization")))
+                    : new StubPolicy.Answer(HttpStatusCode.fromCode(503), List.of());
+            final HttpStatusCode code = answer.httpStatusCode();
+            final var headers = exchange.getResponseHeaders();
+            headers.set("Server", "Apache (stub)");
+            headers.set("Content-Type", "text/html; charset=UTF-8");
+            if (code.equals(HttpStatusCode.unauthorized)) {
+                headers.set("WWW-Authenticate", "Basic realm=\"stub\"");
+            } else if (code.equals(HttpStatusCode.moved)) {
+                headers.set("Location", "http://" + host + path + "/");
+            }
+            final byte[] body = StubPages.build(code, path, host, answer.bodyStrings(), bodySize).getBytes(StandardCharsets.UTF_8);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(code.getCode(), -1);
+            } else {
+                exchange.sendResponseHeaders(code.getCode(), body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}